@@ -0,0 +1,85 @@
+package benchmarks;
+
+import Pages.CarbCalculatorPage;
+import base.LocalCalculatorServer;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Page-object hot paths in headless Chrome against the captured calculator page served by
+ * LocalCalculatorServer, with a result table already on the page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageObjectBenchmark {
+
+    private static final String RESULT_QUERY = "carbohydrate-calculator.html?ctype=metric&cage=30&csex=m"
+            + "&cheightmeter=180&ckg=80&cactivity=1.465&cformula=m&cfatpct=20&x=Calculate";
+    private static final String[] ACTIVITIES = {"Sedentary", "Very Active"};
+    private static final String[] FORMULAS = {"Katch-McArdle", "Mifflin St Jeor"};
+
+    private WebDriver driver;
+    private CarbCalculatorPage page;
+    private List<WebElement> resultCells;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void openPage() {
+        // page objects log through log4j, Selenium through java.util.logging
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        String baseURL = LocalCalculatorServer.start(0).getBaseURL();
+        driver = new ChromeDriver(new ChromeOptions().addArguments("--headless=new", "--window-size=1366,900"));
+        driver.navigate().to(baseURL + RESULT_QUERY);
+        page = new CarbCalculatorPage(driver);
+        page.expandSettings();
+        resultCells = driver.findElements(By.cssSelector("table.cinfoT td"));
+    }
+
+    @TearDown(Level.Trial)
+    public void closePage() {
+        if (driver != null)
+            driver.quit();
+        LocalCalculatorServer.stopIfRunning();
+    }
+
+    @Benchmark
+    public List<String> getElementsTextList() {
+        return page.getElementsTextList(resultCells);
+    }
+
+    // a fresh page object has no result snapshot, so each call reads and scans the table
+    @Benchmark
+    public boolean isMetricUnitResult() {
+        return new CarbCalculatorPage(driver).isMetricUnitResult();
+    }
+
+    @Benchmark
+    public boolean isUSUnitResult() {
+        return new CarbCalculatorPage(driver).isUSUnitResult();
+    }
+
+    // selectElementByPartialVisibleText
+    @Benchmark
+    public void selectActivityOption() {
+        page.selectActivityOption(ACTIVITIES[next++ & 1]);
+    }
+
+    @Benchmark
+    public void selectBMRFormula() {
+        page.selectBMRFormula(FORMULAS[next++ & 1]);
+    }
+}
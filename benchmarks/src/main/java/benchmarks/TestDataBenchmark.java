@@ -0,0 +1,93 @@
+package benchmarks;
+
+import base.BaseTest;
+import base.TestDataStore;
+import base.TestDataStream;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing cost of the test-data file on large synthetic inputs: the indexed load behind
+ * BaseTest.loadTestCaseInput / getTestRow, and the row stream behind the bulkData provider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestDataBenchmark {
+
+    private static final String LOOKUP_TEST = "verifyCarbCalculatorWithValidInputMetricUnit";
+    private static final String STREAMED_TEST = "verifyCarbCalculatorInputSweep";
+    private static final String[] ACTIVITIES = {"Sedentary", "Light", "Moderate", "Active", "Very Active", "Extra Active"};
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private Path dir;
+    // two identical files, so every load misses BaseTest's same-file shortcut and parses again
+    private final String[] files = new String[2];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+        dir = Files.createTempDirectory("carb-benchmark");
+        for (int i = 0; i < files.length; i++) {
+            Path file = dir.resolve("data-" + i + ".txt");
+            writeSyntheticData(file, rows);
+            files[i] = file.toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        for (String file : files) {
+            Files.deleteIfExists(Path.of(file));
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public TestDataStore.Row loadTestCaseInput() {
+        next ^= 1;
+        return DataLoader.loadAndFind(files[next], LOOKUP_TEST);
+    }
+
+    @Benchmark
+    public void streamBulkData(Blackhole blackhole) {
+        TestDataStream stream = TestDataStream.forTest(files[0], STREAMED_TEST);
+        while (stream.hasNext()) {
+            blackhole.consume(stream.next());
+        }
+    }
+
+    private static void writeSyntheticData(Path file, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < rows; i++) {
+                // only the last row has the looked-up test, so the load scans the whole file; one row in five is streamed
+                String tc = i == rows - 1 ? LOOKUP_TEST : i % 5 == 0 ? STREAMED_TEST : "syntheticTest" + (i % 97);
+                out.write("tc=" + tc + ",age=" + (18 + i % 63) + ",gender=" + (i % 2 == 0 ? "male" : "female")
+                        + ",cm=" + (140 + i % 71) + ",kg=" + (40 + i % 101) + ".5"
+                        + ",activity=" + ACTIVITIES[i % ACTIVITIES.length]);
+                out.newLine();
+            }
+        }
+    }
+
+    // goes through BaseTest's own (protected) loading path
+    private static final class DataLoader extends BaseTest {
+        static TestDataStore.Row loadAndFind(String file, String testName) {
+            loadTestCaseInput(file);
+            return getTestRow(testName);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Runs the suite as N shards in parallel JVMs on this machine, split the way CI agents
+# split it (-Dshard.index / -Dshard.count), then merges their reports into
+# target/shards/merged with base.ShardReportMerger. The shards write their reports and their
+# parts of the .test-history files to their own directories; the merger folds the latter in.
+#
+# usage: scripts/run-shards.sh <shard count> [maven options, e.g. -Dtest=CarbCalculatorHttpTest]
+set -uo pipefail
+
+count=${1:?usage: $0 <shard count> [maven options]}
+shift
+cd "$(dirname "$0")/.." || exit 2
+out=target/shards
+rm -rf "$out"
+mkdir -p "$out"
+
+# compile once; the shards only run surefire against the compiled classes
+mvn -B -q test-compile dependency:build-classpath -Dmdep.includeScope=test \
+    -Dmdep.outputFile="$out/classpath.txt" || exit 2
+
+pids=()
+for ((i = 0; i < count; i++)); do
+    dir="$out/shard-$i"
+    mkdir -p "$dir"
+    mvn -B surefire:test -Dshard.index="$i" -Dshard.count="$count" \
+        -Dsurefire.reportsDirectory="$PWD/$dir" \
+        -Dtest.timings.dir="$dir/action-timings" \
+        -Dtest.commandStats.dir="$dir/command-stats" \
+        -Dtest.load.reportDir="$dir/load" \
+        -Dtest.selection.report="$dir/test-selection.json" \
+        -Dtest.pairwise.report="$dir/pairwise-coverage.json" \
+        -Dtest.adaptiveTimeouts.report="$dir/wait-timeouts.json" \
+        "$@" > "$dir/console.log" 2>&1 &
+    pids+=($!)
+done
+
+status=0
+for i in "${!pids[@]}"; do
+    if ! wait "${pids[$i]}"; then
+        echo "shard $i failed, see $out/shard-$i/console.log"
+        status=1
+    fi
+done
+
+java -cp "target/test-classes:target/classes:$(cat "$out/classpath.txt")" \
+    base.ShardReportMerger "$out/merged" "$out"/shard-* || status=$?
+exit "$status"
@@ -0,0 +1,80 @@
+package Common;
+
+import org.openqa.selenium.json.Json;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread latency histograms keyed by page-object action name. Page objects record
+ * into the current thread's set; the test harness takes a summary and resets it after
+ * every test, so each test gets its own figures even when tests run in parallel.
+ */
+public final class ActionTimings {
+
+    private static final ThreadLocal<Map<String, LatencyHistogram>> histograms =
+            ThreadLocal.withInitial(LinkedHashMap::new);
+
+    private ActionTimings() {
+    }
+
+    public static void record(String action, long nanos) {
+        histograms.get().computeIfAbsent(action, name -> new LatencyHistogram()).record(nanos);
+    }
+
+    public static <T> T time(String action, Supplier<T> body) {
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            record(action, System.nanoTime() - start);
+        }
+    }
+
+    public static void time(String action, Runnable body) {
+        long start = System.nanoTime();
+        try {
+            body.run();
+        } finally {
+            record(action, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * The current thread's histograms, in the order the actions were first recorded.
+     */
+    public static Map<String, LatencyHistogram> current() {
+        return Collections.unmodifiableMap(histograms.get());
+    }
+
+    public static void reset() {
+        histograms.remove();
+    }
+
+    /**
+     * count, mean, p50/p95/p99 and max in milliseconds per action, as JSON.
+     */
+    public static String summaryJson(String testName) {
+        Map<String, Object> actions = new LinkedHashMap<>();
+        histograms.get().forEach((action, histogram) -> {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", histogram.getCount());
+            summary.put("meanMs", millis(histogram.getMeanNanos()));
+            summary.put("p50Ms", millis(histogram.getPercentileNanos(50)));
+            summary.put("p95Ms", millis(histogram.getPercentileNanos(95)));
+            summary.put("p99Ms", millis(histogram.getPercentileNanos(99)));
+            summary.put("maxMs", millis(histogram.getMaxNanos()));
+            actions.put(action, summary);
+        });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("test", testName);
+        report.put("actions", actions);
+        return new Json().toJson(report);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -1,82 +1,257 @@
 package Common;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.PageFactory;
+import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.time.Duration;
-import java.util.logging.Logger;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public abstract class BasePage {
 
-    protected final static Logger logger = Logger.getLogger(BasePage.class.getName());
+    protected final static Logger logger = LogManager.getLogger(BasePage.class);
+
+    // explicit-wait timeout where the code names none; see TimeoutManager for learned ones
+    private static final Duration DEFAULT_WAIT = Duration.ofSeconds(10);
+
+    // DOM quiet time after the load event before an absent element is reported as absent
+    private static final long SETTLE_MILLIS = 250;
+
+    // Resolves as soon as the XPath matches a visible element. Re-checks on every DOM mutation
+    // instead of polling. With settle=true it also resolves (not found) once the document has
+    // loaded and the DOM has been quiet for SETTLE_MILLIS, so negative checks return early.
+    private static final String AWAIT_VISIBLE_SCRIPT =
+            "var xpath = arguments[0], timeout = arguments[1], settle = arguments[2], settleMillis = arguments[3];" +
+            "var done = arguments[arguments.length - 1];" +
+            "var start = performance.now(), finished = false, observer, timer, settleTimer;" +
+            "function visible(el) {" +
+            "  if (!el || !el.getClientRects().length) return false;" +
+            "  var style = window.getComputedStyle(el);" +
+            "  return style.visibility !== 'hidden' && style.display !== 'none';" +
+            "}" +
+            "function find() {" +
+            "  return document.evaluate(xpath, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
+            "}" +
+            "function finish(found) {" +
+            "  if (finished) return;" +
+            "  finished = true;" +
+            "  if (observer) observer.disconnect();" +
+            "  clearTimeout(timer); clearTimeout(settleTimer);" +
+            "  done({found: found, elapsed: performance.now() - start});" +
+            "}" +
+            "function armSettle() {" +
+            "  if (!settle || document.readyState !== 'complete') return;" +
+            "  clearTimeout(settleTimer);" +
+            "  settleTimer = setTimeout(function () { finish(visible(find())); }, settleMillis);" +
+            "}" +
+            "function check() {" +
+            "  if (visible(find())) finish(true); else armSettle();" +
+            "}" +
+            "observer = new MutationObserver(check);" +
+            "observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});" +
+            "timer = setTimeout(function () { finish(false); }, timeout);" +
+            "if (document.readyState !== 'complete') window.addEventListener('load', check);" +
+            "check();";
     protected WebDriver driver;
     protected WebDriverWait wait;
 
+    // @FindBy fields resolve once per page state instead of on every call
+    private final ElementCache elementCache = new ElementCache();
+
     public BasePage(WebDriver driver) {
         this.driver = driver;
-        this.wait = new WebDriverWait(driver, Duration.ofSeconds(10));
-        PageFactory.initElements(driver, this);
+        this.wait = new WebDriverWait(driver, DEFAULT_WAIT);
+        PageFactory.initElements(new CachingFieldDecorator(new CachingElementLocatorFactory(driver, elementCache)), this);
+    }
+
+    /**
+     * Call after anything that replaces the document (navigation, form submit, tab links),
+     * so the @FindBy fields are looked up again.
+     */
+    protected void invalidateElementCache() {
+        elementCache.invalidate();
+    }
+
+    public ElementCache getElementCache() {
+        return elementCache;
+    }
+
+    /**
+     * Runs a page-object action and records its duration under the action name in the
+     * current test's latency histograms (see ActionTimings).
+     */
+    protected static <T> T timed(String action, Supplier<T> body) {
+        return ActionTimings.time(action, body);
+    }
+
+    protected static void timed(String action, Runnable body) {
+        ActionTimings.time(action, body);
     }
 
     protected void type(WebElement element, String text){
-        waitForElementToBeClickable(element);
-        element.click();
-        element.clear();
-        element.sendKeys(text);
-        logger.info("Typed '" + text + "' into element " + element);
+        timed("type", () -> {
+            waitForElementToBeClickable(element);
+            element.click();
+            element.clear();
+            element.sendKeys(text);
+        });
+        logger.info("Typed '{}' into element {}", text, element);
     }
 
     protected void selectElementByVisibleText(WebElement element, String text){
-        waitForElementToBeClickable(element);
-        Select select = new Select(element);
-        select.selectByVisibleText(text);
-        logger.info("Selected option '" + text + "' in element " + element);
+        timed("selectElementByVisibleText", () -> {
+            waitForElementToBeClickable(element);
+            Select select = new Select(element);
+            select.selectByVisibleText(text);
+        });
+        logger.info("Selected option '{}' in element {}", text, element);
     }
 
     protected void selectElementByPartialVisibleText(WebElement element, String partialText){
-        Select select = new Select(element);
-        WebElement desiredOption = select.getOptions().stream()
-                        .filter(option -> option.getText().toLowerCase().contains(partialText.toLowerCase()))
-                                .findFirst()
-                                        .orElseThrow(() -> new IllegalArgumentException(
-                                                "No option contains text: " + partialText
-                                        ));
-        select.selectByVisibleText(desiredOption.getText());
-        logger.info("Selected option containing'" + partialText + desiredOption.getText() + "' in element " + element);
+        String selected = timed("selectElementByPartialVisibleText", () -> {
+            Select select = new Select(element);
+            WebElement desiredOption = select.getOptions().stream()
+                    .filter(option -> option.getText().toLowerCase().contains(partialText.toLowerCase()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "No option contains text: " + partialText
+                    ));
+            select.selectByVisibleText(desiredOption.getText());
+            return desiredOption.getText();
+        });
+        logger.info("Selected option '{}' containing '{}' in element {}", selected, partialText, element);
     }
 
-    protected void waitForVisibility(WebElement element) {
-        wait.until(ExpectedConditions.visibilityOf(element));
+    protected WaitResult waitForVisibility(WebElement element) {
+        return timedWait("waitForVisibility", element, DEFAULT_WAIT, ExpectedConditions.visibilityOf(element));
     }
 
-    protected void waitForVisibility(WebElement element, int timeoutSeconds) {
+    protected WaitResult waitForVisibility(WebElement element, int timeoutSeconds) {
         try {
-            new WebDriverWait(driver, Duration.ofSeconds(timeoutSeconds))
-                    .until(ExpectedConditions.visibilityOf(element));
+            return timedWait("waitForVisibility", element, Duration.ofSeconds(timeoutSeconds),
+                    ExpectedConditions.visibilityOf(element));
         } catch (TimeoutException e) {
-            logger.warning("Timeout waiting for visibility of element: " + element);
+            logger.warn("Timeout waiting for visibility of element: {}", element);
             throw e;
         }
     }
 
-    protected void waitForElementToBeClickable(WebElement element) {
-        wait.until(ExpectedConditions.elementToBeClickable(element));
+    protected WaitResult waitForElementToBeClickable(WebElement element) {
+        return timedWait("waitForElementToBeClickable", element, DEFAULT_WAIT,
+                ExpectedConditions.elementToBeClickable(element));
+    }
+
+    /**
+     * Waits inside the page for the XPath to match a visible element, signalled by a
+     * MutationObserver instead of WebDriver polling. Never throws on timeout.
+     */
+    protected WaitResult awaitVisible(String xpath, Duration timeout) {
+        return awaitInPage(xpath, timeout, false);
+    }
+
+    /**
+     * Like awaitVisible, but also gives up as soon as the loaded page has stopped changing,
+     * so checking for something that is not going to appear does not burn the full timeout.
+     */
+    protected WaitResult awaitVisibleOrSettled(String xpath, Duration timeout) {
+        return awaitInPage(xpath, timeout, true);
+    }
+
+    private WaitResult awaitInPage(String xpath, Duration codedTimeout, boolean settle) {
+        String action = settle ? "awaitVisibleOrSettled" : "awaitVisible";
+        String site = waitSite(action, xpath);
+        Duration timeout = TimeoutManager.timeout(site, codedTimeout);
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        boolean found = false;
+        while (!found) {
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0)
+                break;
+            try {
+                Object result = ((JavascriptExecutor) driver).executeAsyncScript(AWAIT_VISIBLE_SCRIPT,
+                        xpath, remainingMillis, settle, SETTLE_MILLIS);
+                found = Boolean.TRUE.equals(((Map<?, ?>) result).get("found"));
+                break;
+            } catch (StaleElementReferenceException | ScriptTimeoutException | JavascriptException e) {
+                // the document was replaced while waiting (e.g. form submit): wait on the new one.
+                // Script errors of any other kind (a bad XPath) are not going to go away
+                if (e instanceof JavascriptException && !isDocumentUnload(e))
+                    throw e;
+                logger.debug("In-page wait restarted for {}: {}", xpath, e.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        ActionTimings.record(action, elapsed);
+        // a settled negative check completed too; only running into the deadline is a timeout
+        TimeoutManager.record(site, elapsed, found || start + elapsed < deadline);
+        WaitResult result = new WaitResult(xpath, found, Duration.ofNanos(elapsed));
+        logger.info("Wait {}", result);
+        return result;
+    }
+
+    // Chrome: "document unloaded while waiting for result", Firefox: "Document was unloaded"
+    private static boolean isDocumentUnload(WebDriverException e) {
+        String message = e.getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains("unloaded");
+    }
+
+    private WaitResult timedWait(String action, WebElement element, Duration codedTimeout,
+                                 ExpectedCondition<?> condition) {
+        String site = waitSite(action, element.toString());
+        Duration timeout = TimeoutManager.timeout(site, codedTimeout);
+        WebDriverWait wait = timeout.equals(DEFAULT_WAIT) ? this.wait : new WebDriverWait(driver, timeout);
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            wait.until(condition);
+            completed = true;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            ActionTimings.record(action, elapsed);
+            TimeoutManager.record(site, elapsed, completed);
+        }
+        WaitResult result = new WaitResult(action + " " + element, true, Duration.ofNanos(System.nanoTime() - start));
+        logger.debug("Wait {}", result);
+        return result;
+    }
+
+    /**
+     * Names a wait for TimeoutManager: page class, kind of wait and its target.
+     */
+    private String waitSite(String action, String target) {
+        return getClass().getSimpleName() + "|" + action + "|" + target;
     }
 
     protected void switchToDefaultContent() {
          driver.switchTo().defaultContent();
+         invalidateElementCache();
     }
 
     protected void switchToFrame(WebElement iframe) {
         driver.switchTo().frame(iframe);
+        invalidateElementCache();
     }
 
     protected String getPageTitle() {
         return driver.getTitle();
     }
+
+    protected Object executeScript(String script, Object... args) {
+        return timed("executeScript", () -> ((JavascriptExecutor) driver).executeScript(script, args));
+    }
 }
@@ -0,0 +1,84 @@
+package Common;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+
+import java.util.List;
+
+/**
+ * Locator for one page-object field that keeps the resolved element (or list) until the
+ * page's {@link ElementCache} moves to a new generation or the element goes stale.
+ */
+public final class CachingElementLocator implements ElementLocator {
+
+    private final SearchContext searchContext;
+    private final By by;
+    private final ElementCache cache;
+    private final String field;
+
+    private WebElement element;
+    private long elementGeneration;
+    private List<WebElement> elements;
+    private long elementsGeneration;
+
+    public CachingElementLocator(SearchContext searchContext, By by, ElementCache cache) {
+        this(searchContext, by, cache, by.toString());
+    }
+
+    /**
+     * @param field the page-object field (class#name) the locator belongs to, recorded in
+     *              the DependencyTrace on every lookup
+     */
+    public CachingElementLocator(SearchContext searchContext, By by, ElementCache cache, String field) {
+        this.searchContext = searchContext;
+        this.by = by;
+        this.cache = cache;
+        this.field = field;
+    }
+
+    @Override
+    public WebElement findElement() {
+        DependencyTrace.recordLocator(field);
+        if (element != null && elementGeneration == cache.getGeneration()) {
+            cache.recordHit();
+            return element;
+        }
+        cache.recordMiss();
+        element = searchContext.findElement(by);
+        elementGeneration = cache.getGeneration();
+        return element;
+    }
+
+    @Override
+    public List<WebElement> findElements() {
+        DependencyTrace.recordLocator(field);
+        if (elements != null && elementsGeneration == cache.getGeneration()) {
+            cache.recordHit();
+            return elements;
+        }
+        cache.recordMiss();
+        elements = List.copyOf(searchContext.findElements(by));
+        elementsGeneration = cache.getGeneration();
+        return elements;
+    }
+
+    /**
+     * Drops this field's cached element(s) after a stale reference, counting the retry.
+     */
+    void invalidate() {
+        element = null;
+        elements = null;
+        cache.recordStaleRetry();
+    }
+
+    public By getBy() {
+        return by;
+    }
+
+    @Override
+    public String toString() {
+        return by.toString();
+    }
+}
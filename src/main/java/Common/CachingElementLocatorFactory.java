@@ -0,0 +1,28 @@
+package Common;
+
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.support.pagefactory.Annotations;
+import org.openqa.selenium.support.pagefactory.ElementLocatorFactory;
+
+import java.lang.reflect.Field;
+
+/**
+ * Creates a {@link CachingElementLocator} for each @FindBy field of a page object, all
+ * sharing the page's {@link ElementCache}.
+ */
+public final class CachingElementLocatorFactory implements ElementLocatorFactory {
+
+    private final SearchContext searchContext;
+    private final ElementCache cache;
+
+    public CachingElementLocatorFactory(SearchContext searchContext, ElementCache cache) {
+        this.searchContext = searchContext;
+        this.cache = cache;
+    }
+
+    @Override
+    public CachingElementLocator createLocator(Field field) {
+        return new CachingElementLocator(searchContext, new Annotations(field).buildBy(), cache,
+                field.getDeclaringClass().getName() + "#" + field.getName());
+    }
+}
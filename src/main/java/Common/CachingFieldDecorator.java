@@ -0,0 +1,87 @@
+package Common;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Locatable;
+import org.openqa.selenium.support.pagefactory.DefaultFieldDecorator;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * PageFactory decorator whose element proxies resolve through {@link CachingElementLocator}.
+ * A call that hits a stale element drops the cached lookup and is retried once against a
+ * fresh one; elements of list fields are proxied the same way, by index.
+ */
+public class CachingFieldDecorator extends DefaultFieldDecorator {
+
+    public CachingFieldDecorator(CachingElementLocatorFactory factory) {
+        super(factory);
+    }
+
+    @Override
+    protected WebElement proxyForLocator(ClassLoader loader, ElementLocator locator) {
+        CachingElementLocator caching = (CachingElementLocator) locator;
+        return elementProxy(loader, caching, caching::findElement, caching.toString());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<WebElement> proxyForListLocator(ClassLoader loader, ElementLocator locator) {
+        CachingElementLocator caching = (CachingElementLocator) locator;
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("toString".equals(method.getName()))
+                return "Proxy element list for: " + caching;
+            int size = caching.findElements().size();
+            List<WebElement> elements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int index = i;
+                elements.add(elementProxy(loader, caching, () -> elementAt(caching, index), caching + " [" + index + "]"));
+            }
+            return invoke(method, elements, args);
+        };
+        return (List<WebElement>) Proxy.newProxyInstance(loader, new Class<?>[]{List.class}, handler);
+    }
+
+    private static WebElement elementAt(CachingElementLocator locator, int index) {
+        List<WebElement> elements = locator.findElements();
+        if (index >= elements.size())
+            throw new NoSuchElementException("No element at index " + index + " for " + locator);
+        return elements.get(index);
+    }
+
+    private static WebElement elementProxy(ClassLoader loader, CachingElementLocator locator,
+                                           Supplier<WebElement> resolve, String description) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("toString".equals(method.getName()))
+                return "Proxy element for: " + description;
+            if ("getWrappedElement".equals(method.getName()))
+                return resolve.get();
+            try {
+                return invoke(method, resolve.get(), args);
+            } catch (StaleElementReferenceException e) {
+                // the page changed under the cached element; look it up again, once
+                locator.invalidate();
+                return invoke(method, resolve.get(), args);
+            }
+        };
+        return (WebElement) Proxy.newProxyInstance(loader,
+                new Class<?>[]{WebElement.class, WrapsElement.class, Locatable.class}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
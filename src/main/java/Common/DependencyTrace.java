@@ -0,0 +1,85 @@
+package Common;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Per-thread record of what the running test touched, for change-aware test selection:
+ * {@code locator:<class>#<field>} for every @FindBy field resolved and
+ * {@code method:<class>#<method>} for every page-object method (and, if the harness asks,
+ * test method) on the stack when the driver was called. Off unless enabled, so normal runs
+ * pay nothing; the test harness takes the set and resets it after every test, like ActionTimings.
+ */
+public final class DependencyTrace {
+
+    private static final StackWalker STACK = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private static final ThreadLocal<Set<String>> dependencies = ThreadLocal.withInitial(LinkedHashSet::new);
+    private static volatile boolean enabled;
+
+    private DependencyTrace() {
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void record(String dependency) {
+        if (enabled)
+            dependencies.get().add(dependency);
+    }
+
+    static void recordLocator(String field) {
+        record("locator:" + field);
+    }
+
+    /**
+     * Records every page-object method (a BasePage subclass or BasePage itself) on the
+     * calling thread's stack; lambdas count as the method they are written in.
+     */
+    public static void recordPageMethods() {
+        recordMethods(BasePage.class::isAssignableFrom);
+    }
+
+    /**
+     * Records every method on the calling thread's stack declared by a class the filter accepts.
+     */
+    public static void recordMethods(Predicate<Class<?>> owners) {
+        if (!enabled)
+            return;
+        Set<String> current = dependencies.get();
+        STACK.forEach(frame -> {
+            Class<?> type = frame.getDeclaringClass();
+            if (owners.test(type))
+                current.add("method:" + type.getName() + "#" + sourceName(type, frame.getMethodName()));
+        });
+    }
+
+    /**
+     * The current thread's dependencies, in the order they were first recorded.
+     */
+    public static Set<String> current() {
+        return Collections.unmodifiableSet(dependencies.get());
+    }
+
+    public static void reset() {
+        dependencies.remove();
+    }
+
+    // lambda$enterAge$0 -> enterAge, <init> -> the constructor's (class) name
+    private static String sourceName(Class<?> type, String methodName) {
+        if (methodName.equals("<init>"))
+            return type.getSimpleName();
+        if (methodName.startsWith("lambda$")) {
+            int end = methodName.indexOf('$', "lambda$".length());
+            return end < 0 ? methodName : methodName.substring("lambda$".length(), end);
+        }
+        return methodName;
+    }
+}
@@ -0,0 +1,57 @@
+package Common;
+
+/**
+ * Page state shared by a page object's cached element locators. Every navigation or frame
+ * switch starts a new generation, which makes all cached elements resolve again; the
+ * counters show how many lookups the cache saved.
+ */
+public final class ElementCache {
+
+    private long generation;
+    private long hits;
+    private long misses;
+    private long staleRetries;
+
+    public void invalidate() {
+        generation++;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    void recordHit() {
+        hits++;
+    }
+
+    void recordMiss() {
+        misses++;
+    }
+
+    void recordStaleRetry() {
+        staleRetries++;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStaleRetries() {
+        return staleRetries;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("element cache: hits=%d misses=%d staleRetries=%d hitRate=%.0f%%",
+                hits, misses, staleRetries, getHitRate() * 100);
+    }
+}
@@ -0,0 +1,379 @@
+package Common;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wait timeouts learned from how long each wait site took in earlier runs. A wait site is
+ * one kind of wait on one target in one page object, e.g.
+ * {@code CarbCalculatorPage|awaitVisible|//h1[...]}. Every wait is recorded per site; the
+ * latest Policy.window samples of a site are kept across runs in a JSON file, and its
+ * timeout is their Policy.percentile times (1 + Policy.margin), held between the floor and
+ * the ceiling. A site with fewer than Policy.minSamples samples keeps the timeout written
+ * in the code. Waits that time out are recorded at the time they waited, but a few timed-out
+ * samples hardly move a high percentile, so while one of a site's last runs had a timeout the
+ * site gets at least the larger of its coded timeout and Policy.backoff times the timeout that
+ * run used (up to the ceiling). Each run also stores every site's p95 and used timeout, and a
+ * site whose recent runs are Policy.driftRatio slower than its earlier ones is flagged as
+ * drifting. Parallel runs sharing a history each write only their own waits (saveRun), and
+ * one manager adds them all (addRun) before saving. Off unless the test harness installs a
+ * manager; page objects then get their coded timeouts.
+ */
+public final class TimeoutManager {
+
+    private final static Logger logger = LogManager.getLogger(TimeoutManager.class);
+
+    private static final int FILE_VERSION = 1;
+    // runs compared against the earlier ones for drift
+    private static final int RECENT_RUNS = 3;
+
+    private static volatile TimeoutManager active;
+
+    private final Path file;
+    private final Policy policy;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private final List<String> drifting = new ArrayList<>();
+
+    /**
+     * How timeouts are derived from the recorded latencies.
+     *
+     * @param percentile of the kept samples the timeout is based on (0-100)
+     * @param margin     added as a fraction of that percentile, 0.5 = 50% more
+     * @param minSamples samples a site needs before its timeout is learned
+     * @param window     samples kept per site across runs, the latest win
+     * @param runs       per-run summaries kept per site for drift detection
+     * @param driftRatio how much slower the recent runs' p95 must be to flag a site
+     * @param backoff    factor on the timeout of a site that timed out in one of the recent runs
+     */
+    public record Policy(double percentile, double margin, Duration floor, Duration ceiling,
+                         int minSamples, int window, int runs, double driftRatio, double backoff) {
+    }
+
+    private static final class Site {
+        // milliseconds, oldest first: samples of earlier runs, then of this one
+        final List<Double> history = new ArrayList<>();
+        final List<Double> samples = new ArrayList<>();
+        final List<Map<String, Object>> runs = new ArrayList<>();
+        long timeouts;
+        // decided once per run, so every wait of a site in a run gets the same timeout
+        Duration coded;
+        Duration timeout;
+    }
+
+    private TimeoutManager(Path file, Policy policy) {
+        this.file = file;
+        this.policy = policy;
+    }
+
+    /**
+     * Opens the latency history, reading the file of an earlier run when there is one. An
+     * unreadable file is reported and every site starts without history.
+     */
+    public static TimeoutManager open(Path file, Policy policy) {
+        TimeoutManager manager = new TimeoutManager(file, policy);
+        if (Files.exists(file)) {
+            try {
+                manager.load(Files.readString(file, StandardCharsets.UTF_8));
+            } catch (IOException | JsonException | ClassCastException e) {
+                logger.warn("Ignoring unreadable wait latency history {}: {}", file, e.getMessage());
+                manager.sites.clear();
+            }
+        }
+        logger.info("Wait latency history {}: {} site(s), p{} + {}% within [{} ms, {} ms] after {} sample(s)",
+                file, manager.sites.size(), policy.percentile(), Math.round(policy.margin() * 100),
+                policy.floor().toMillis(), policy.ceiling().toMillis(), policy.minSamples());
+        return manager;
+    }
+
+    /**
+     * Makes page-object waits use and feed this manager; pass null to go back to the coded timeouts.
+     */
+    public static void install(TimeoutManager manager) {
+        active = manager;
+    }
+
+    public static TimeoutManager active() {
+        return active;
+    }
+
+    /**
+     * The timeout for a wait site: learned from its history when a manager is installed and
+     * has enough samples, otherwise the coded one.
+     */
+    public static Duration timeout(String site, Duration coded) {
+        TimeoutManager manager = active;
+        return manager == null ? coded : manager.timeoutOf(site, coded);
+    }
+
+    /**
+     * Records how long a wait took; completed is false when it ran into its timeout.
+     */
+    public static void record(String site, long nanos, boolean completed) {
+        TimeoutManager manager = active;
+        if (manager != null)
+            manager.addWait(site, nanos, completed);
+    }
+
+    /**
+     * This manager's timeout for a wait site in the current run, decided at the first call.
+     */
+    public Duration timeoutOf(String name, Duration coded) {
+        Site site = sites.computeIfAbsent(name, key -> new Site());
+        synchronized (site) {
+            if (site.timeout == null) {
+                site.coded = coded;
+                site.timeout = site.history.size() < policy.minSamples() ? coded : learned(site.history);
+                long timedOut = timedOutRecently(site.runs);
+                if (timedOut > 0) {
+                    long backedOff = Math.max(coded.toMillis(), Math.round(timedOut * policy.backoff()));
+                    site.timeout = Duration.ofMillis(Math.max(site.timeout.toMillis(),
+                            Math.min(policy.ceiling().toMillis(), backedOff)));
+                }
+                logger.debug("Timeout {} ms for {} (coded {} ms, {} sample(s){})", site.timeout.toMillis(), name,
+                        coded.toMillis(), site.history.size(), timedOut > 0 ? ", backed off after a timeout" : "");
+            }
+            return site.timeout;
+        }
+    }
+
+    /**
+     * The largest timeout in milliseconds a site used in one of its recent runs that ran into
+     * it, 1 when such a run did not store it, or 0 when none of the recent runs timed out.
+     */
+    private static long timedOutRecently(List<Map<String, Object>> runs) {
+        long timeout = 0;
+        for (Map<String, Object> run : runs.subList(Math.max(0, runs.size() - RECENT_RUNS), runs.size())) {
+            if (run.get("timeouts") instanceof Number timeouts && timeouts.longValue() > 0)
+                timeout = Math.max(timeout, run.get("timeoutMs") instanceof Number used ? used.longValue() : 1);
+        }
+        return timeout;
+    }
+
+    private Duration learned(List<Double> samples) {
+        double millis = percentile(samples, policy.percentile()) * (1 + policy.margin());
+        long bounded = Math.max(policy.floor().toMillis(), Math.min(policy.ceiling().toMillis(), Math.round(millis)));
+        return Duration.ofMillis(bounded);
+    }
+
+    /**
+     * Records a wait of the current run with this manager; see {@link #record}.
+     */
+    public void addWait(String name, long nanos, boolean completed) {
+        Site site = sites.computeIfAbsent(name, key -> new Site());
+        synchronized (site) {
+            site.samples.add(Math.round(Math.max(0, nanos) / 1_000.0) / 1_000.0);
+            if (!completed)
+                site.timeouts++;
+        }
+    }
+
+    /**
+     * Folds this run's waits into the history, flags drifting sites and writes the file.
+     */
+    public synchronized void save() {
+        String now = Instant.now().toString();
+        drifting.clear();
+        Map<String, Object> stored = new TreeMap<>();
+        sites.forEach((name, site) -> {
+            synchronized (site) {
+                if (!site.samples.isEmpty()) {
+                    Map<String, Object> run = new LinkedHashMap<>();
+                    run.put("at", now);
+                    run.put("count", site.samples.size());
+                    run.put("timeouts", site.timeouts);
+                    run.put("timeoutMs", site.timeout == null ? null : site.timeout.toMillis());
+                    run.put("p50Ms", percentile(site.samples, 50));
+                    run.put("p95Ms", percentile(site.samples, 95));
+                    site.runs.add(run);
+                    trim(site.runs, policy.runs());
+                    site.history.addAll(site.samples);
+                    trim(site.history, policy.window());
+                    site.samples.clear();
+                    site.timeouts = 0;
+                    if (isDrifting(site.runs)) {
+                        drifting.add(name);
+                        logger.warn("Wait site {} is drifting: recent p95 {} ms against {} ms before", name,
+                                recentP95(site.runs), earlierP95(site.runs));
+                    }
+                }
+                site.timeout = null;
+                stored.put(name, Map.of("samples", site.history, "runs", site.runs));
+            }
+        });
+        write(file, Map.of("version", FILE_VERSION, "sites", stored));
+    }
+
+    /**
+     * Writes only this run's waits to a file of their own and leaves the history file alone,
+     * for a run in parallel with others; see {@link #addRun}.
+     */
+    public synchronized void saveRun(Path runFile) {
+        Map<String, Object> run = new TreeMap<>();
+        sites.forEach((name, site) -> {
+            synchronized (site) {
+                if (!site.samples.isEmpty()) {
+                    Map<String, Object> waits = new LinkedHashMap<>();
+                    waits.put("samples", List.copyOf(site.samples));
+                    waits.put("timeouts", site.timeouts);
+                    waits.put("timeoutMs", site.timeout == null ? null : site.timeout.toMillis());
+                    run.put(name, waits);
+                }
+            }
+        });
+        write(runFile, Map.of("version", FILE_VERSION, "run", run));
+    }
+
+    /**
+     * Adds the waits of a file written by saveRun to this run's, so the next save folds the
+     * waits of parallel runs into the history as one run. A missing or unreadable file adds nothing.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void addRun(Path runFile) {
+        if (!Files.exists(runFile))
+            return;
+        try {
+            Map<String, Object> content = new Json().toType(Files.readString(runFile, StandardCharsets.UTF_8), Json.MAP_TYPE);
+            if (!(content.get("version") instanceof Number version) || version.intValue() != FILE_VERSION) {
+                logger.warn("Ignoring wait latencies {} of another format version", runFile);
+                return;
+            }
+            ((Map<String, Map<String, Object>>) content.get("run")).forEach((name, stored) -> {
+                Site site = sites.computeIfAbsent(name, key -> new Site());
+                synchronized (site) {
+                    for (Object sample : (List<Object>) stored.get("samples"))
+                        site.samples.add(((Number) sample).doubleValue());
+                    site.timeouts += ((Number) stored.get("timeouts")).longValue();
+                    // parallel runs decide the same timeout from the same history; keep the longest
+                    if (stored.get("timeoutMs") instanceof Number used
+                            && (site.timeout == null || used.longValue() > site.timeout.toMillis()))
+                        site.timeout = Duration.ofMillis(used.longValue());
+                }
+            });
+        } catch (IOException | JsonException | ClassCastException e) {
+            logger.warn("Ignoring unreadable wait latencies {}: {}", runFile, e.getMessage());
+        }
+    }
+
+    private void write(Path target, Map<String, Object> content) {
+        try {
+            Path dir = target.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+            Files.writeString(temp, new Json().toJson(content), StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot write wait latencies {}", target, e);
+        }
+    }
+
+    // the median p95 of the latest runs against the median p95 of the runs before them
+    private boolean isDrifting(List<Map<String, Object>> runs) {
+        if (runs.size() < RECENT_RUNS + 1)
+            return false;
+        double earlier = earlierP95(runs);
+        return earlier > 0 && recentP95(runs) >= earlier * policy.driftRatio();
+    }
+
+    private static double recentP95(List<Map<String, Object>> runs) {
+        return medianP95(runs.subList(runs.size() - RECENT_RUNS, runs.size()));
+    }
+
+    private static double earlierP95(List<Map<String, Object>> runs) {
+        return medianP95(runs.subList(0, runs.size() - RECENT_RUNS));
+    }
+
+    private static double medianP95(List<Map<String, Object>> runs) {
+        return percentile(runs.stream().map(run -> ((Number) run.get("p95Ms")).doubleValue()).toList(), 50);
+    }
+
+    /**
+     * Wait sites flagged as drifting by the last save.
+     */
+    public synchronized List<String> getDrifting() {
+        return List.copyOf(drifting);
+    }
+
+    /**
+     * Per site: samples kept, p50/p99 in milliseconds, the learned timeout of the next run,
+     * whether that is backed off after a timeout and whether it is drifting, as JSON. Call after save.
+     */
+    public synchronized String reportJson() {
+        Map<String, Object> report = new TreeMap<>();
+        sites.forEach((name, site) -> {
+            synchronized (site) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("samples", site.history.size());
+                entry.put("p50Ms", percentile(site.history, 50));
+                entry.put("p99Ms", percentile(site.history, 99));
+                entry.put("nextTimeoutMs", site.history.size() < policy.minSamples() ? null
+                        : learned(site.history).toMillis());
+                entry.put("backedOff", timedOutRecently(site.runs) > 0);
+                entry.put("drifting", drifting.contains(name));
+                report.put(name, entry);
+            }
+        });
+        return new Json().toJson(Map.of("sites", report));
+    }
+
+    public String summary() {
+        int learned = 0;
+        int backedOff = 0;
+        for (Site site : sites.values()) {
+            synchronized (site) {
+                if (site.history.size() >= policy.minSamples())
+                    learned++;
+                if (timedOutRecently(site.runs) > 0)
+                    backedOff++;
+            }
+        }
+        return String.format("Wait timeouts: %d site(s), %d with a learned timeout, %d backed off after a timeout, %d drifting",
+                sites.size(), learned, backedOff, getDrifting().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load(String json) {
+        Map<String, Object> content = new Json().toType(json, Json.MAP_TYPE);
+        if (!(content.get("version") instanceof Number version) || version.intValue() != FILE_VERSION) {
+            logger.warn("Ignoring wait latency history {} of another format version", file);
+            return;
+        }
+        ((Map<String, Map<String, Object>>) content.get("sites")).forEach((name, stored) -> {
+            Site site = new Site();
+            for (Object sample : (List<Object>) stored.get("samples"))
+                site.history.add(((Number) sample).doubleValue());
+            site.runs.addAll((List<Map<String, Object>>) stored.get("runs"));
+            sites.put(name, site);
+        });
+    }
+
+    // nearest rank
+    private static double percentile(List<Double> samples, double percentile) {
+        if (samples.isEmpty())
+            return 0;
+        List<Double> sorted = new ArrayList<>(samples);
+        sorted.sort(null);
+        int rank = (int) Math.ceil(sorted.size() * percentile / 100.0);
+        return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+    }
+
+    private static void trim(List<?> list, int max) {
+        if (list.size() > max)
+            list.subList(0, list.size() - max).clear();
+    }
+}
@@ -0,0 +1,14 @@
+package Common;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a page-object wait: whether the condition was met and how long the wait took.
+ */
+public record WaitResult(String description, boolean satisfied, Duration elapsed) {
+
+    @Override
+    public String toString() {
+        return (satisfied ? "met" : "not met") + " after " + elapsed.toMillis() + " ms: " + description;
+    }
+}
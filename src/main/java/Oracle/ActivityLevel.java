@@ -0,0 +1,51 @@
+package Oracle;
+
+/**
+ * Activity options of the calculator, in page order, with their TDEE multipliers.
+ */
+public enum ActivityLevel {
+
+    BMR("Basal Metabolic Rate (BMR)", 1.0),
+    SEDENTARY("Sedentary: little or no exercise", 1.2),
+    LIGHT("Light: exercise 1-3 times/week", 1.375),
+    MODERATE("Moderate: exercise 4-5 times/week", 1.465),
+    ACTIVE("Active: daily exercise or intense exercise 3-4 times/week", 1.55),
+    VERY_ACTIVE("Very Active: intense exercise 6-7 times/week", 1.725),
+    EXTRA_ACTIVE("Extra Active: very intense exercise daily, or physical job", 1.9);
+
+    private final String optionText;
+    private final double factor;
+
+    ActivityLevel(String optionText, double factor) {
+        this.optionText = optionText;
+        this.factor = factor;
+    }
+
+    public String getOptionText() {
+        return optionText;
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    /**
+     * The option's value attribute, i.e. the cactivity form parameter ("1", "1.2", ...).
+     */
+    public String getOptionValue() {
+        return factor == Math.rint(factor) ? String.valueOf((long) factor) : String.valueOf(factor);
+    }
+
+    /**
+     * Same partial, case-insensitive match as CarbCalculatorPage.selectActivityOption:
+     * the first option whose text contains the given text.
+     */
+    public static ActivityLevel fromText(String partialText) {
+        String wanted = partialText.toLowerCase();
+        for (ActivityLevel level : values()) {
+            if (level.optionText.toLowerCase().contains(wanted))
+                return level;
+        }
+        throw new IllegalArgumentException("No option contains text: " + partialText);
+    }
+}
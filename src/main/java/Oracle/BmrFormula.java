@@ -0,0 +1,40 @@
+package Oracle;
+
+/**
+ * BMR estimation formulas offered in the calculator's settings.
+ */
+public enum BmrFormula {
+
+    MIFFLIN_ST_JEOR("Mifflin St Jeor", "m"),
+    REVISED_HARRIS_BENEDICT("Revised Harris-Benedict", "h"),
+    KATCH_MCARDLE("Katch-McArdle", "k");
+
+    private final String label;
+    private final String formValue;
+
+    BmrFormula(String label, String formValue) {
+        this.label = label;
+        this.formValue = formValue;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Value of the cformula radio button for this formula.
+     */
+    public String getFormValue() {
+        return formValue;
+    }
+
+    public static BmrFormula fromLabel(String label) {
+        if (label == null || label.isBlank())
+            return MIFFLIN_ST_JEOR;
+        for (BmrFormula formula : values()) {
+            if (formula.label.equalsIgnoreCase(label.trim()) || formula.formValue.equalsIgnoreCase(label.trim()))
+                return formula;
+        }
+        throw new IllegalArgumentException("BMR formula not found: " + label);
+    }
+}
@@ -0,0 +1,68 @@
+package Oracle;
+
+/**
+ * Pure-Java reference implementation of the carbohydrate calculator, used as a test
+ * oracle for the page results. {@link #calculate} only does arithmetic on primitives
+ * and writes into a caller-owned {@link CarbResult}, so it allocates nothing.
+ */
+public final class CarbCalculatorEngine {
+
+    public static final int MIN_AGE = 18;
+    public static final int MAX_AGE = 80;
+
+    // Share of the daily calories taken from carbohydrates, and kcal per gram of carbs
+    public static final double CARBS_LOW_SHARE = 0.45;
+    public static final double CARBS_HIGH_SHARE = 0.65;
+    public static final double KCAL_PER_CARB_GRAM = 4.0;
+
+    public static final double CM_PER_INCH = 2.54;
+    public static final double KG_PER_POUND = 0.45359237;
+
+    private static final Goal[] GOALS = Goal.values();
+
+    private CarbCalculatorEngine() {
+    }
+
+    /**
+     * The page only shows results for ages 18 to 80 and a warning otherwise.
+     */
+    public static boolean isAgeSupported(double age) {
+        return age >= MIN_AGE && age <= MAX_AGE;
+    }
+
+    public static double bmr(double age, boolean male, double heightCm, double weightKg,
+                             BmrFormula formula, double bodyFatPct) {
+        switch (formula) {
+            case REVISED_HARRIS_BENEDICT:
+                return male
+                        ? 13.397 * weightKg + 4.799 * heightCm - 5.677 * age + 88.362
+                        : 9.247 * weightKg + 3.098 * heightCm - 4.330 * age + 447.593;
+            case KATCH_MCARDLE:
+                return 370 + 21.6 * (1 - bodyFatPct / 100) * weightKg;
+            default:
+                return 10 * weightKg + 6.25 * heightCm - 5 * age + (male ? 5 : -161);
+        }
+    }
+
+    public static CarbResult calculate(double age, boolean male, double heightCm, double weightKg,
+                                       double activityFactor, BmrFormula formula, double bodyFatPct,
+                                       CarbResult out) {
+        out.bmr = bmr(age, male, heightCm, weightKg, formula, bodyFatPct);
+        out.maintenanceCalories = out.bmr * activityFactor;
+        for (int i = 0; i < GOALS.length; i++) {
+            double calories = out.maintenanceCalories + GOALS[i].getCalorieDelta();
+            out.dailyCalories[i] = calories;
+            out.carbsGramsLow[i] = calories * CARBS_LOW_SHARE / KCAL_PER_CARB_GRAM;
+            out.carbsGramsHigh[i] = calories * CARBS_HIGH_SHARE / KCAL_PER_CARB_GRAM;
+        }
+        return out;
+    }
+
+    public static double heightCm(double feet, double inch) {
+        return (feet * 12 + inch) * CM_PER_INCH;
+    }
+
+    public static double weightKg(double pound) {
+        return pound * KG_PER_POUND;
+    }
+}
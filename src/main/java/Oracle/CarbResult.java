@@ -0,0 +1,48 @@
+package Oracle;
+
+/**
+ * Mutable holder for one engine calculation. Reuse a single instance across calls to
+ * keep {@link CarbCalculatorEngine#calculate} free of allocations.
+ */
+public final class CarbResult {
+
+    private static final int GOALS = Goal.values().length;
+
+    double bmr;
+    double maintenanceCalories;
+    final double[] dailyCalories = new double[GOALS];
+    final double[] carbsGramsLow = new double[GOALS];
+    final double[] carbsGramsHigh = new double[GOALS];
+
+    public double getBmr() {
+        return bmr;
+    }
+
+    public double getMaintenanceCalories() {
+        return maintenanceCalories;
+    }
+
+    public double getDailyCalories(Goal goal) {
+        return dailyCalories[goal.ordinal()];
+    }
+
+    public double getCarbsGramsLow(Goal goal) {
+        return carbsGramsLow[goal.ordinal()];
+    }
+
+    public double getCarbsGramsHigh(Goal goal) {
+        return carbsGramsHigh[goal.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("CarbResult[bmr=").append(Math.round(bmr));
+        for (Goal goal : Goal.values()) {
+            int i = goal.ordinal();
+            text.append(", ").append(goal).append('=').append(Math.round(dailyCalories[i]))
+                    .append(" kcal/").append(Math.round(carbsGramsLow[i])).append('-')
+                    .append(Math.round(carbsGramsHigh[i])).append(" g");
+        }
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,47 @@
+package Oracle;
+
+/**
+ * Rows of the result table: weight goals and their daily calorie adjustment.
+ */
+public enum Goal {
+
+    MAINTAIN("Maintain weight", "Maintain weight", 0),
+    MILD_LOSS("Mild weight loss 0.25 kg/week", "Mild weight loss 0.5 lb/week", -250),
+    LOSS("Weight loss 0.5 kg/week", "Weight loss 1 lb/week", -500),
+    EXTREME_LOSS("Extreme weight loss 1 kg/week", "Extreme weight loss 2 lb/week", -1000),
+    MILD_GAIN("Mild weight gain 0.25 kg/week", "Mild weight gain 0.5 lb/week", 250),
+    GAIN("Weight gain 0.5 kg/week", "Weight gain 1 lb/week", 500),
+    FAST_GAIN("Fast weight gain 1 kg/week", "Fast weight gain 2 lb/week", 1000);
+
+    private final String metricLabel;
+    private final String usLabel;
+    private final int calorieDelta;
+
+    Goal(String metricLabel, String usLabel, int calorieDelta) {
+        this.metricLabel = metricLabel;
+        this.usLabel = usLabel;
+        this.calorieDelta = calorieDelta;
+    }
+
+    public String getLabel(boolean usUnits) {
+        return usUnits ? usLabel : metricLabel;
+    }
+
+    public int getCalorieDelta() {
+        return calorieDelta;
+    }
+
+    /**
+     * Maps a goal cell of the result table back to its goal, in either unit system.
+     */
+    public static Goal fromLabel(String label) {
+        String text = label.toLowerCase();
+        if (text.contains("maintain"))
+            return MAINTAIN;
+        if (text.contains("loss"))
+            return text.contains("extreme") ? EXTREME_LOSS : text.contains("mild") ? MILD_LOSS : LOSS;
+        if (text.contains("gain"))
+            return text.contains("fast") ? FAST_GAIN : text.contains("mild") ? MILD_GAIN : GAIN;
+        throw new IllegalArgumentException("Unknown goal: " + label);
+    }
+}
@@ -0,0 +1,133 @@
+package Oracle;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sub-tabs of the Other Units converter with the size of each unit in the tab's base
+ * unit (meter, square meter, cubic meter, kilogram); temperatures convert through Celsius.
+ * The sizes are derived from the units' legal definitions (see {@link Defined}), not taken
+ * from the converter page, so the page is checked against an independent reference.
+ */
+public enum UnitConverterTab {
+
+    LENGTH("Length", new Object[][]{
+            {"Meter", 1.0}, {"Kilometer", 1e3}, {"Centimeter", 1e-2}, {"Millimeter", 1e-3},
+            {"Micrometer", 1e-6}, {"Nanometer", 1e-9}, {"Mile", Defined.MILE}, {"Yard", Defined.YARD},
+            {"Foot", Defined.FOOT}, {"Inch", Defined.INCH}, {"Light Year", Defined.LIGHT_YEAR}
+    }),
+    TEMPERATURE("Temperature", new Object[][]{
+            {"Celsius", Double.NaN}, {"Kelvin", Double.NaN}, {"Fahrenheit", Double.NaN}
+    }),
+    AREA("Area", new Object[][]{
+            {"Square Meter", 1.0}, {"Square Kilometer", 1e6}, {"Square Centimeter", 1e-4},
+            {"Square Millimeter", 1e-6}, {"Square Micrometer", 1e-12}, {"Hectare", 1e4},
+            {"Square Mile", Defined.MILE * Defined.MILE}, {"Square Yard", Defined.YARD * Defined.YARD},
+            {"Square Foot", Defined.FOOT * Defined.FOOT}, {"Square Inch", Defined.INCH * Defined.INCH},
+            {"Acre", Defined.ACRE}
+    }),
+    VOLUME("Volume", new Object[][]{
+            {"Cubic Meter", 1.0}, {"Cubic Kilometer", 1e9}, {"Cubic Centimeter", 1e-6},
+            {"Cubic Millimeter", 1e-9}, {"Liter", 1e-3}, {"Milliliter", 1e-6},
+            {"US Gallon", Defined.US_GALLON}, {"US Quart", Defined.US_GALLON / 4},
+            {"US Pint", Defined.US_GALLON / 8}, {"US Cup", Defined.US_GALLON / 16},
+            {"US Fluid Ounce", Defined.US_FLUID_OUNCE}, {"US Table Spoon", Defined.US_FLUID_OUNCE / 2},
+            {"US Tea Spoon", Defined.US_FLUID_OUNCE / 6},
+            {"Imperial Gallon", Defined.IMPERIAL_GALLON}, {"Imperial Quart", Defined.IMPERIAL_GALLON / 4},
+            {"Imperial Pint", Defined.IMPERIAL_GALLON / 8}, {"Imperial Fluid Ounce", Defined.IMPERIAL_GALLON / 160},
+            {"Cubic Mile", Defined.MILE * Defined.MILE * Defined.MILE},
+            {"Cubic Yard", Defined.YARD * Defined.YARD * Defined.YARD},
+            {"Cubic Foot", Defined.FOOT * Defined.FOOT * Defined.FOOT},
+            {"Cubic Inch", Defined.CUBIC_INCH}
+    }),
+    WEIGHT("Weight", new Object[][]{
+            {"Kilogram", 1.0}, {"Gram", 1e-3}, {"Milligram", 1e-6}, {"Metric Ton", 1e3},
+            {"Long Ton", 2240 * Defined.POUND}, {"Short Ton", 2000 * Defined.POUND}, {"Pound", Defined.POUND},
+            {"Ounce", Defined.POUND / 16}, {"Carat", Defined.CARAT}, {"Atomic Mass Unit", Defined.DALTON}
+    });
+
+    /**
+     * Exact definitions in SI units (NIST SP 811 Appendix B, NIST Handbook 44 Appendix C),
+     * everything else in the table is derived from these.
+     */
+    private static final class Defined {
+        // international yard and pound (1959)
+        static final double INCH = 0.0254;
+        static final double FOOT = 12 * INCH;
+        static final double YARD = 3 * FOOT;
+        static final double MILE = 1760 * YARD;
+        static final double POUND = 0.45359237;
+        // international acre: 43 560 square feet
+        static final double ACRE = 43560 * FOOT * FOOT;
+        // US liquid gallon: 231 cubic inches, 128 US fluid ounces
+        static final double CUBIC_INCH = INCH * INCH * INCH;
+        static final double US_GALLON = 231 * CUBIC_INCH;
+        static final double US_FLUID_OUNCE = US_GALLON / 128;
+        // imperial gallon: 4.546 09 liters (UK Weights and Measures Act 1985), 160 imperial fluid ounces
+        static final double IMPERIAL_GALLON = 4.54609e-3;
+        // IAU: speed of light times a Julian year of 365.25 days
+        static final double LIGHT_YEAR = 299792458.0 * 365.25 * 86400;
+        // metric carat: 200 mg
+        static final double CARAT = 2e-4;
+        // unified atomic mass unit (dalton), CODATA 2022; measured, not exact
+        static final double DALTON = 1.66053906892e-27;
+    }
+
+    private final String label;
+    private final Map<String, Double> factors = new LinkedHashMap<>();
+
+    UnitConverterTab(String label, Object[][] units) {
+        this.label = label;
+        for (Object[] unit : units) {
+            factors.put((String) unit[0], (Double) unit[1]);
+        }
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Unit names in the order the converter lists them.
+     */
+    public Set<String> getUnits() {
+        return Collections.unmodifiableSet(factors.keySet());
+    }
+
+    public boolean hasUnit(String unit) {
+        return factors.containsKey(unit.trim());
+    }
+
+    public double convert(String fromUnit, String toUnit, double value) {
+        if (this == TEMPERATURE)
+            return fromCelsius(toUnit.trim(), toCelsius(fromUnit.trim(), value));
+        return value * factor(fromUnit) / factor(toUnit);
+    }
+
+    private double factor(String unit) {
+        Double factor = factors.get(unit.trim());
+        if (factor == null)
+            throw new IllegalArgumentException("Unknown " + label + " unit: " + unit);
+        return factor;
+    }
+
+    private static double toCelsius(String unit, double value) {
+        return switch (unit) {
+            case "Celsius" -> value;
+            case "Kelvin" -> value - 273.15;
+            case "Fahrenheit" -> (value - 32) * 5 / 9;
+            default -> throw new IllegalArgumentException("Unknown Temperature unit: " + unit);
+        };
+    }
+
+    private static double fromCelsius(String unit, double value) {
+        return switch (unit) {
+            case "Celsius" -> value;
+            case "Kelvin" -> value + 273.15;
+            case "Fahrenheit" -> value * 9 / 5 + 32;
+            default -> throw new IllegalArgumentException("Unknown Temperature unit: " + unit);
+        };
+    }
+}
@@ -1,22 +1,111 @@
 package Pages;
 
 import Common.BasePage;
+import Common.DependencyTrace;
+import org.apache.logging.log4j.util.Supplier;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CarbCalculatorPage extends BasePage {
 
     // Relative URL path for the carbohydrate calculator page on the website
     private String CarbCalPath = "/carbohydrate-calculator.html";
 
+    // Locators that are also waited for from inside the page
+    private static final String CAL_CALCULATOR_HDR_XPATH = "//h1[text()='Carbohydrate Calculator']";
+    private static final String RESULT_HDR_XPATH = "//h2[text()='Result']";
+    private static final String AGE_BOUNDARY_WARNING_XPATH = "//div/font[text()='Please provide an age between 18 and 80.']";
+    private static final String UNIT_CONVERTER_HDR_XPATH = "//div[contains(., 'Use this converter to convert to the unit accepted')]";
+
+    // Reads every cell of the result table in one round-trip; null when there is no table
+    private static final String RESULT_TABLE_SCRIPT =
+            "var table = document.querySelector('table.cinfoT');" +
+            "if (!table) return null;" +
+            "return Array.from(table.rows).map(function (row) {" +
+            "  return Array.from(row.cells).map(function (cell) { return cell.innerText; });" +
+            "});";
+
+    // Sets all form fields in one round-trip and fires the input/change events the page validates on.
+    // Returns null on success, otherwise the reason the form could not be filled.
+    private static final String FAST_FILL_SCRIPT =
+            "var values = arguments[0];" +
+            "function fire(el) {" +
+            "  el.dispatchEvent(new Event('input', {bubbles: true}));" +
+            "  el.dispatchEvent(new Event('change', {bubbles: true}));" +
+            "}" +
+            "var fields = values.fields;" +
+            "for (var id in fields) {" +
+            "  var input = document.getElementById(id);" +
+            "  if (!input) return 'Field not on page: ' + id;" +
+            "  input.value = fields[id];" +
+            "  fire(input);" +
+            "}" +
+            "if (values.gender) {" +
+            "  var radio = document.getElementById(values.gender);" +
+            "  if (!radio.checked) radio.click();" +
+            "}" +
+            "if (values.activity) {" +
+            "  var select = document.querySelector('select[name=\"cactivity\"]');" +
+            "  var wanted = values.activity.toLowerCase();" +
+            "  var option = Array.from(select.options).find(function (o) { return o.text.toLowerCase().indexOf(wanted) >= 0; });" +
+            "  if (!option) return 'No option contains text: ' + values.activity;" +
+            "  select.value = option.value;" +
+            "  fire(select);" +
+            "}" +
+            "if (values.formula) {" +
+            "  var wantedFormula = values.formula.trim().toLowerCase();" +
+            "  var formula = Array.from(document.querySelectorAll('input[name=\"cformula\"]')).find(function (r) {" +
+            "    return r.parentElement.textContent.trim().toLowerCase() === wantedFormula;" +
+            "  });" +
+            "  if (!formula) return 'BMR formula not found: ' + values.formula;" +
+            "  if (!formula.checked) formula.click();" +
+            "}" +
+            "return null;";
+
+    // Runs every from/to unit pair of the converter's current sub-tab with the value in arguments[0]
+    // and returns [from, to, output] per pair; the original selection and value are restored.
+    // Returns null when the converter fields are not in the current frame.
+    private static final String UNIT_SWEEP_SCRIPT =
+            "var value = arguments[0];" +
+            "var from = document.getElementById('calFrom'), to = document.getElementById('calTo');" +
+            "var input = document.getElementsByName('fromVal')[0], output = document.getElementsByName('toVal')[0];" +
+            "if (!from || !to || !input || !output) return null;" +
+            "function fire(el, type) { el.dispatchEvent(new Event(type, {bubbles: true})); }" +
+            "var saved = [from.selectedIndex, to.selectedIndex, input.value];" +
+            "input.value = value;" +
+            "var results = [];" +
+            "for (var i = 0; i < from.options.length; i++) {" +
+            "  from.selectedIndex = i;" +
+            "  fire(from, 'change');" +
+            "  for (var j = 0; j < to.options.length; j++) {" +
+            "    to.selectedIndex = j;" +
+            "    fire(to, 'change');" +
+            "    fire(input, 'input');" +
+            "    fire(input, 'keyup');" +
+            "    results.push([from.options[i].text, to.options[j].text, output.value]);" +
+            "  }" +
+            "}" +
+            "from.selectedIndex = saved[0];" +
+            "to.selectedIndex = saved[1];" +
+            "input.value = saved[2];" +
+            "fire(input, 'input');" +
+            "return results;";
+
+    // Snapshot of the last result table, dropped whenever the page may have changed
+    private ResultTable resultTable;
+
     // =============== Common Elements ===============
 
-    @FindBy(xpath = "//h1[text()='Carbohydrate Calculator']")
+    @FindBy(xpath = CAL_CALCULATOR_HDR_XPATH)
     private WebElement CalCalculatorHdr;
 
     @FindBy(id = "cage")
@@ -46,24 +135,9 @@ public class CarbCalculatorPage extends BasePage {
     @FindBy(css = "input[value=\"Clear\"]")
     private WebElement clearBtn;
 
-    @FindBy(xpath = "//h2[text()='Result']")
-    private WebElement resultImg;
-
     @FindBy(className = "cinfoT")
     private WebElement resultTbl;
 
-    @FindBy(xpath = "//td[contains(text(), 'week')]")
-    private List<WebElement> goalList;
-
-    @FindBy(xpath = "//td[contains(text(), 'Calories')]")
-    private List<WebElement> dailyCaloriesList;
-
-    @FindBy(xpath = "//td/b[contains(text(), 'grams')]")
-    private List<WebElement> carbsGramsList;
-
-    @FindBy(css = "\"table.cinfoT td\"")
-    private List<WebElement> cells;
-
     @FindBy(id = "cageifcErr")
     private WebElement ageInputErrorMsg;
 
@@ -76,9 +150,6 @@ public class CarbCalculatorPage extends BasePage {
     @FindBy(id = "cfatpctifcErr")
     private WebElement bodyFatInputErrorMsg;
 
-    @FindBy(xpath = "//div/font[text()='Please provide an age between 18 and 80.']")
-    private WebElement ageBoundaryWarningMsg;
-
     /* ===============  Metric units =============== */
     @FindBy(id = "menuon")
     private WebElement metricUnitsTab;
@@ -109,7 +180,7 @@ public class CarbCalculatorPage extends BasePage {
     @FindBy(xpath = "//iframe[contains(@src, 'converter')]")
     private WebElement ucIframe;
 
-    @FindBy(xpath = "//div[contains(., 'Use this converter to convert to the unit accepted')]")
+    @FindBy(xpath = UNIT_CONVERTER_HDR_XPATH)
     private WebElement unitConverterHdr;
 
     @FindBy(xpath = "//li/a[contains(text(), 'Length')]")
@@ -145,13 +216,18 @@ public class CarbCalculatorPage extends BasePage {
     }
 
     public void navigateToCarbCalculatorPage(String baseURL) {
-        driver.navigate().to(baseURL + CarbCalPath);
-        logger.info("Navigate to Carb Calculator page: " + baseURL + CarbCalPath);
+        // baseURL usually ends with "/", avoid requesting "//carbohydrate-calculator.html"
+        String url = baseURL.replaceAll("/+$", "") + CarbCalPath;
+        resultTable = null;
+        timed("navigateToCarbCalculatorPage", () -> driver.navigate().to(url));
+        invalidateElementCache();
+        logger.info("Navigate to Carb Calculator page: {}", url);
     }
 
     public void waitForPageLoaded() {
-        waitForVisibility(CalCalculatorHdr, 5);
-        logger.info("######## page title = \" + getPageTitle() + \"########");
+        if (!awaitVisible(CAL_CALCULATOR_HDR_XPATH, Duration.ofSeconds(5)).satisfied())
+            throw new TimeoutException("Carbohydrate Calculator header not visible: " + CalCalculatorHdr);
+        logger.debug("######## page title = {} ########", (Supplier<?>) this::getPageTitle);
     }
 
     public void enterAge(String age) {
@@ -166,24 +242,64 @@ public class CarbCalculatorPage extends BasePage {
         } else {
             throw new IllegalArgumentException("Unsupport gender: " + gender);
         }
-        logger.info("Selected gender option: " + gender);
+        logger.info("Selected gender option: {}", gender);
     }
 
     public void selectActivityOption(String option) {
         selectElementByPartialVisibleText(activityDrpDwn, option);
     }
 
+    /**
+     * Fills the whole form with one script call instead of typing field by field.
+     * The keystroke-based enter/select methods stay the default for tests of typing behaviour.
+     */
+    public void fastFill(CarbFormInput input) {
+        Map<String, String> fields = new HashMap<>();
+        putIfPresent(fields, "cage", input.age());
+        putIfPresent(fields, "cheightmeter", input.heightCm());
+        putIfPresent(fields, "ckg", input.weightKg());
+        putIfPresent(fields, "cheightfeet", input.heightFeet());
+        putIfPresent(fields, "cheightinch", input.heightInch());
+        putIfPresent(fields, "cpound", input.weightPound());
+        putIfPresent(fields, "cfatpct", input.bodyFat());
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("fields", fields);
+        if (input.gender() != null)
+            values.put("gender", genderRadioId(input.gender()));
+        if (input.activity() != null)
+            values.put("activity", input.activity());
+        if (input.formula() != null)
+            values.put("formula", input.formula());
+
+        Object error = timed("fastFill", () -> executeScript(FAST_FILL_SCRIPT, values));
+        if (error != null)
+            throw new IllegalArgumentException(error.toString());
+        logger.info("Fast-filled form with {}", input);
+    }
+
+    private static void putIfPresent(Map<String, String> fields, String id, String value) {
+        if (value != null)
+            fields.put(id, value);
+    }
+
+    private static String genderRadioId(String gender) {
+        if (gender.toLowerCase().startsWith("m"))
+            return "csex1";
+        if (gender.toLowerCase().startsWith("f"))
+            return "csex2";
+        throw new IllegalArgumentException("Unsupport gender: " + gender);
+    }
+
     public void submitCalculation() {
-        submitBtn.click();
+        resultTable = null;
+        timed("submitCalculation", () -> submitBtn.click());
+        invalidateElementCache();
     }
 
     public boolean waitUntilResultIsVisible() {
-        try {
-            waitForVisibility(resultImg, 2);
-            return true;
-        } catch(TimeoutException e) {
-            return false;
-        }
+        return timed("waitUntilResultIsVisible",
+                () -> awaitVisibleOrSettled(RESULT_HDR_XPATH, Duration.ofSeconds(2)).satisfied());
     }
 
     public void expandSettings() {
@@ -242,30 +358,60 @@ public class CarbCalculatorPage extends BasePage {
     }
 
     public boolean isAgeBoundaryWarningMsgDisplayed() {
-        return ageBoundaryWarningMsg.isDisplayed();
+        return timed("isAgeBoundaryWarningMsgDisplayed",
+                () -> awaitVisibleOrSettled(AGE_BOUNDARY_WARNING_XPATH, Duration.ofSeconds(2)).satisfied());
     }
 
     public List<String> getElementsTextList(List<WebElement> elements) {
         waitForVisibility(resultTbl);
-        return elements.stream()
-                .map(WebElement::getText)
-                .map(String::trim)
+        @SuppressWarnings("unchecked")
+        List<Object> texts = (List<Object>) executeScript(
+                "return arguments[0].map(function (e) { return e.innerText; });", elements);
+        return texts.stream()
+                .map(text -> String.valueOf(text).trim())
                 .toList();
     }
 
+    /**
+     * Returns the result table of the last submit, reading it from the page once.
+     */
+    public ResultTable getResultTable() {
+        return timed("getResultTable", () -> {
+            // the cell parsing is not a page-object method, so the trace does not see it on the stack
+            DependencyTrace.record("source:" + ResultTable.class.getName());
+            if (resultTable == null) {
+                waitForVisibility(resultTbl);
+                Object rows = executeScript(RESULT_TABLE_SCRIPT);
+                resultTable = rows == null ? ResultTable.empty() : ResultTable.fromRows(toRows(rows));
+                logger.info("Read result table: {}", resultTable);
+            }
+            return resultTable;
+        });
+    }
+
     public List<String> getDailyCaloriesStringList() {
-        return getElementsTextList(dailyCaloriesList);
+        return timed("getDailyCaloriesStringList", () -> getResultTable().getDailyCaloriesStrings());
     }
 
     public List<String> getCarbsGramsStringList() {
-        return getElementsTextList(carbsGramsList);
+        return timed("getCarbsGramsStringList", () -> getResultTable().getCarbsGramsStrings());
+    }
+
+    private static List<List<String>> toRows(Object scriptResult) {
+        List<List<String>> rows = new ArrayList<>();
+        for (Object row : (List<?>) scriptResult) {
+            rows.add(((List<?>) row).stream().map(String::valueOf).toList());
+        }
+        return rows;
     }
 
     /**************************************************************
      **                       Metric Units                       **
      **************************************************************/
     public void switchToMetricUnitsTab() {
+        resultTable = null;
         metricUnitsTab.click();
+        invalidateElementCache();
         waitForVisibility(unitConverterHdr);
     }
 
@@ -279,8 +425,7 @@ public class CarbCalculatorPage extends BasePage {
 
     public boolean isMetricUnitResult(){
         try {
-            return goalList.stream()
-                    .allMatch(element -> element.getText().toLowerCase().contains("kg"));
+            return timed("isMetricUnitResult", () -> getResultTable().isMetric());
         } catch (TimeoutException e) {
             return false;
         }
@@ -290,7 +435,9 @@ public class CarbCalculatorPage extends BasePage {
      **                        US Units                          **
      **************************************************************/
     public void switchToUSUnitsTab() {
+        resultTable = null;
         USUnitsTab.click();
+        invalidateElementCache();
     }
 
     public void enterHeightFeet(String height) {
@@ -307,8 +454,7 @@ public class CarbCalculatorPage extends BasePage {
 
     public boolean isUSUnitResult(){
         try {
-            return goalList.stream()
-                    .allMatch(element -> element.getText().toLowerCase().contains("lb"));
+            return timed("isUSUnitResult", () -> getResultTable().isUS());
         } catch (TimeoutException e) {
             return false;
         }
@@ -319,12 +465,13 @@ public class CarbCalculatorPage extends BasePage {
      **************************************************************/
 
     public void switchToOtherUnitsTab() {
+        resultTable = null;
         otherUnitsTab.click();
+        invalidateElementCache();
     }
 
     public boolean isUnitConverterHeaderDisplayed() {
-        waitForVisibility(unitConverterHdr);
-        return unitConverterHdr.isDisplayed();
+        return awaitVisible(UNIT_CONVERTER_HDR_XPATH, Duration.ofSeconds(10)).satisfied();
     }
 
     public void switchToLengthSubTab() {
@@ -352,8 +499,10 @@ public class CarbCalculatorPage extends BasePage {
     }
 
     public String getToVal() {
-        waitForVisibility(toTxt);
-        return toTxt.getAttribute("value");
+        return timed("getToVal", () -> {
+            waitForVisibility(toTxt);
+            return toTxt.getAttribute("value");
+        });
     }
 
     public void selectFromList(String option) {
@@ -366,6 +515,23 @@ public class CarbCalculatorPage extends BasePage {
         selectElementByVisibleText(toList, option);
     }
 
+    /**
+     * Converts the value for every from/to unit pair of the current converter sub-tab in a
+     * single script execution, instead of selecting and typing pair by pair.
+     */
+    public List<UnitConversion> convertAllUnitPairs(String value) {
+        waitForVisibility(fromTxt);
+        Object pairs = timed("convertAllUnitPairs", () -> executeScript(UNIT_SWEEP_SCRIPT, value));
+        if (pairs == null)
+            throw new IllegalStateException("Unit converter fields not found; switch to the converter frame first");
+        List<UnitConversion> conversions = new ArrayList<>();
+        for (List<String> pair : toRows(pairs)) {
+            conversions.add(new UnitConversion(pair.get(0).trim(), pair.get(1).trim(), value, pair.get(2)));
+        }
+        logger.info("Converted {} for {} unit pairs", value, conversions.size());
+        return conversions;
+    }
+
     public void switchToUnitConverterFrame() {
         switchToFrame(ucIframe);
     }
@@ -0,0 +1,33 @@
+package Pages;
+
+/**
+ * Values for one carbohydrate calculator form submission, as typed by a user.
+ * Fields that do not apply to the chosen unit tab are null.
+ */
+public record CarbFormInput(
+        String age,
+        String gender,
+        String heightCm,
+        String weightKg,
+        String heightFeet,
+        String heightInch,
+        String weightPound,
+        String activity,
+        String formula,
+        String bodyFat
+) {
+
+    public static CarbFormInput metric(String age, String gender, String heightCm, String weightKg, String activity) {
+        return new CarbFormInput(age, gender, heightCm, weightKg, null, null, null, activity, null, null);
+    }
+
+    public static CarbFormInput us(String age, String gender, String heightFeet, String heightInch,
+                                   String weightPound, String activity) {
+        return new CarbFormInput(age, gender, null, null, heightFeet, heightInch, weightPound, activity, null, null);
+    }
+
+    public CarbFormInput withFormula(String formula, String bodyFat) {
+        return new CarbFormInput(age, gender, heightCm, weightKg, heightFeet, heightInch, weightPound,
+                activity, formula, bodyFat);
+    }
+}
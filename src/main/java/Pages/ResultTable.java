@@ -0,0 +1,141 @@
+package Pages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Snapshot of the carbohydrate calculator result table (table.cinfoT), taken with a
+ * single script execution. Keeps the raw cell texts and the parsed numbers, so the
+ * result getters need no further WebDriver round-trips.
+ */
+public final class ResultTable {
+
+    // a leading minus is a negative figure (low BMR, extreme loss); " - " between numbers is a range
+    private static final Pattern NUMBER = Pattern.compile("-?\\d[\\d,]*(?:\\.\\d+)?");
+
+    private final List<List<String>> rows;
+    private final List<String> goals = new ArrayList<>();
+    private final List<String> dailyCaloriesStrings = new ArrayList<>();
+    private final List<String> carbsGramsStrings = new ArrayList<>();
+    // the first cell of each row with a calorie figure, e.g. "Maintain weight"
+    private final List<String> goalLabels = new ArrayList<>();
+    private final double[] dailyCalories;
+    private final double[] carbsGramsLow;
+    private final double[] carbsGramsHigh;
+
+    private ResultTable(List<List<String>> rows) {
+        this.rows = rows;
+        for (List<String> row : rows) {
+            for (String cell : row) {
+                // same cells the old per-element locators matched
+                if (cell.contains("week"))
+                    goals.add(cell);
+                if (cell.contains("Calories")) {
+                    dailyCaloriesStrings.add(cell);
+                    goalLabels.add(row.get(0));
+                }
+                if (cell.contains("grams"))
+                    carbsGramsStrings.add(cell);
+            }
+        }
+
+        dailyCalories = new double[dailyCaloriesStrings.size()];
+        for (int i = 0; i < dailyCalories.length; i++) {
+            double[] numbers = parseNumbers(dailyCaloriesStrings.get(i));
+            dailyCalories[i] = numbers.length > 0 ? numbers[0] : Double.NaN;
+        }
+
+        carbsGramsLow = new double[carbsGramsStrings.size()];
+        carbsGramsHigh = new double[carbsGramsStrings.size()];
+        for (int i = 0; i < carbsGramsLow.length; i++) {
+            double[] numbers = parseNumbers(carbsGramsStrings.get(i));
+            carbsGramsLow[i] = numbers.length > 0 ? numbers[0] : Double.NaN;
+            carbsGramsHigh[i] = numbers.length > 1 ? numbers[1] : carbsGramsLow[i];
+        }
+    }
+
+    /**
+     * Builds the snapshot from the cell texts of each table row, header row included.
+     */
+    public static ResultTable fromRows(List<List<String>> rows) {
+        List<List<String>> copy = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            copy.add(row.stream().map(String::trim).toList());
+        }
+        return new ResultTable(List.copyOf(copy));
+    }
+
+    public static ResultTable empty() {
+        return new ResultTable(List.of());
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    public List<List<String>> getRows() {
+        return rows;
+    }
+
+    public List<String> getGoals() {
+        return List.copyOf(goals);
+    }
+
+    public List<String> getDailyCaloriesStrings() {
+        return List.copyOf(dailyCaloriesStrings);
+    }
+
+    public List<String> getCarbsGramsStrings() {
+        return List.copyOf(carbsGramsStrings);
+    }
+
+    /**
+     * The goal cell of the row the goal's figures come from.
+     */
+    public String getGoalLabel(int goal) {
+        return goalLabels.get(goal);
+    }
+
+    public int getGoalCount() {
+        return dailyCalories.length;
+    }
+
+    public double getDailyCalories(int goal) {
+        return dailyCalories[goal];
+    }
+
+    public double getCarbsGramsLow(int goal) {
+        return carbsGramsLow[goal];
+    }
+
+    public double getCarbsGramsHigh(int goal) {
+        return carbsGramsHigh[goal];
+    }
+
+    public boolean isMetric() {
+        return !goals.isEmpty() && goals.stream().allMatch(goal -> goal.toLowerCase().contains("kg"));
+    }
+
+    public boolean isUS() {
+        return !goals.isEmpty() && goals.stream().allMatch(goal -> goal.toLowerCase().contains("lb"));
+    }
+
+    @Override
+    public String toString() {
+        return "ResultTable" + rows;
+    }
+
+    private static double[] parseNumbers(String text) {
+        Matcher matcher = NUMBER.matcher(text);
+        double[] numbers = new double[2];
+        int count = 0;
+        while (count < numbers.length && matcher.find()) {
+            numbers[count++] = Double.parseDouble(matcher.group().replace(",", ""));
+        }
+        double[] found = new double[count];
+        System.arraycopy(numbers, 0, found, 0, count);
+        return found;
+    }
+}
@@ -0,0 +1,20 @@
+package Pages;
+
+/**
+ * One from/to pair read back from the Other Units converter.
+ */
+public record UnitConversion(String fromUnit, String toUnit, String input, String output) {
+
+    /**
+     * The converted number, or NaN when the converter showed nothing parsable.
+     */
+    public double outputValue() {
+        if (output == null || output.isBlank())
+            return Double.NaN;
+        try {
+            return Double.parseDouble(output.trim().replace(",", ""));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package base;
+
+import Common.ActionTimings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes the page-object action latencies (count, mean, p50/p95/p99, max) of every test
+ * as JSON into test.timings.dir, one file per test invocation, then resets them for the
+ * next test on that thread. Registered through the surefire configuration.
+ */
+public class ActionTimingListener implements IInvokedMethodListener {
+
+    private final static Logger logger = LogManager.getLogger(ActionTimingListener.class);
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod())
+            return;
+        try {
+            if (!ActionTimings.current().isEmpty())
+                write(testResult);
+        } finally {
+            ActionTimings.reset();
+        }
+    }
+
+    private void write(ITestResult testResult) {
+        String testName = reportName(testResult);
+        Path dir = Path.of(TestConfig.get().getString("test.timings.dir", "target/surefire-reports/action-timings"));
+        try {
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve(testName + ".json"), ActionTimings.summaryJson(testName), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Cannot write action timings for {}", testName, e);
+        }
+    }
+
+    /**
+     * Class.method, plus the data row for data-driven invocations; used as report file name.
+     */
+    static String reportName(ITestResult testResult) {
+        String testName = testResult.getTestClass().getRealClass().getSimpleName() + "." + testResult.getMethod().getMethodName();
+        Object[] parameters = testResult.getParameters();
+        // data-driven invocations get their own file, named after the data row
+        if (parameters.length > 0 && parameters[0] instanceof TestDataStream.DataRow row)
+            testName += "-line" + row.lineNumber();
+        else if (parameters.length > 0)
+            testName += "-" + Integer.toHexString(Arrays.hashCode(parameters));
+        return testName;
+    }
+}
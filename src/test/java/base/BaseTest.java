@@ -1,147 +1,380 @@
 package base;
 
+import Common.DependencyTrace;
+import Common.TimeoutManager;
 import Pages.CarbCalculatorPage;
+import Pages.CarbFormInput;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.edge.EdgeDriver;
-import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.WebDriverException;
 import org.testng.Assert;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+import org.testng.annotations.AfterSuite;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.DataProvider;
+import org.testng.xml.XmlSuite;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Properties;
-import java.util.Scanner;
-import java.util.logging.Logger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
 
 public abstract class BaseTest {
 
-    protected WebDriver driver;
+    // this run's part of the histories in a sharded run, in shard.reportDir
+    static final String RESULT_CACHE_FILE_NAME = "result-cache.json";
+    static final String WAIT_LATENCIES_FILE_NAME = "wait-latencies.json";
 
-    protected static String baseURL;
-    protected static String browser;
-    private static String implicitlyWait;
-    private static String pageLoadTimeout;
+    // Each TestNG worker thread owns its own browser session and page object
+    private static final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    private static final ThreadLocal<CarbCalculatorPage> carbCalPage = new ThreadLocal<>();
 
-    protected CarbCalculatorPage carbCalPage;
+    private static volatile TestConfig config;
+    private static volatile String baseURL;
+    private static DriverFactory driverFactory;
+    private static DriverPool driverPool;
 
-    protected static ArrayList<HashMap<String, String>> testinputs = null;
+    // Read-only after loading, shared by all test threads
+    private static volatile TestDataStore testData;
 
-    protected final static Logger logger = Logger.getLogger(BaseTest.class.getName());
+    // Verified results shared by all test threads, null unless test.resultCache is on
+    private static volatile ResultCache resultCache;
+
+    protected final static Logger logger = LogManager.getLogger(BaseTest.class);
 
     public void loadTestProperties() {
+        if (config != null)
+            return;
         logger.info("Load overall test properties");
-        Properties properties = new Properties();
-        FileInputStream propFile;
         try {
-            propFile = new FileInputStream("test-config.properties");
-            properties.load(propFile);
-        } catch (IOException e) {
+            config = TestConfig.get();
+        } catch (UncheckedIOException e) {
             Assert.fail(e.getMessage());
         }
+    }
 
-        baseURL = properties.getProperty("test.baseURL");
-        browser = properties.getProperty("test.browser");
-        implicitlyWait = properties.getProperty("test.implicitlyWait");
-        pageLoadTimeout = properties.getProperty("test.pageLoadTimeout");
+    protected static TestConfig getConfig() {
+        return config;
     }
 
-    public void launchBrowser() {
-        logger.info("========Browser session Started========");
-        switch (browser.toLowerCase()) {
-            case "chrome":
-                driver = new ChromeDriver();
-                break;
-            case "firefox":
-                driver = new FirefoxDriver();
-                break;
-            case "edge":
-                driver = new EdgeDriver();
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported browser: " + browser);
+    @BeforeSuite(alwaysRun = true)
+    public void startSuite() {
+        loadTestProperties();
+        if (config.getBoolean("test.localServer", false)) {
+            // serve the captured calculator pages from this JVM instead of the public site
+            LocalCalculatorServer server = LocalCalculatorServer.start(config.getInt("test.localServer.port", 0));
+            server.setThirdPartyDelay(Duration.ofMillis(config.getInt("test.localServer.thirdPartyDelay", 0)));
+            baseURL = server.getBaseURL();
+        } else {
+            baseURL = config.getBaseURL();
         }
+        if (config.getBoolean("test.resultCache", false))
+            resultCache = openResultCache(config, Path.of(config.getString("test.resultCache.file", ".test-history/result-cache.json")));
+        if (config.getBoolean("test.adaptiveTimeouts", false)) {
+            // before the prewarmed sessions are launched, so their first page loads are recorded
+            TimeoutManager.install(openTimeoutManager(config));
+        }
+        if (config.getBoolean("test.pool.prewarm", true) && suiteUsesBrowser()) {
+            // browsers start while test data loads and the first tests are set up
+            getDriverPool().prewarm(getConcurrency(), getDriverFactory()::navigate, baseURL);
+        }
+    }
 
-        driver.manage().window().maximize();
-        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(Integer.parseInt(implicitlyWait)));
-        driver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(Integer.parseInt(pageLoadTimeout)));
+    static ResultCache openResultCache(TestConfig config, Path file) {
+        return ResultCache.open(file,
+                Duration.ofHours(config.getInt("test.resultCache.ttlHours", 168)),
+                config.getInt("test.resultCache.maxEntries", 50000));
     }
 
-    public void initializeUITest() {
-        logger.info("base URL="+baseURL+" browser type="+browser+" implicit Wait="+implicitlyWait+" pageLoad Timeout="+pageLoadTimeout);
-        if (driver == null)
-            launchBrowser();
-        carbCalPage = new CarbCalculatorPage(driver);
-        navigateToHomePage();
+    static TimeoutManager openTimeoutManager(TestConfig config) {
+        return TimeoutManager.open(
+                Path.of(config.getString("test.adaptiveTimeouts.file", ".test-history/wait-latencies.json")),
+                new TimeoutManager.Policy(
+                        config.getDouble("test.adaptiveTimeouts.percentile", 99),
+                        config.getDouble("test.adaptiveTimeouts.margin", 0.5),
+                        Duration.ofMillis(config.getInt("test.adaptiveTimeouts.floorMs", 500)),
+                        Duration.ofMillis(config.getInt("test.adaptiveTimeouts.ceilingMs", 30000)),
+                        config.getInt("test.adaptiveTimeouts.minSamples", 20),
+                        config.getInt("test.adaptiveTimeouts.window", 500),
+                        config.getInt("test.adaptiveTimeouts.runs", 10),
+                        config.getDouble("test.adaptiveTimeouts.driftRatio", 1.5),
+                        config.getDouble("test.adaptiveTimeouts.backoff", 2)));
     }
 
-    protected static void loadTestCaseInput(String testInputFile) {
-        logger.info("load test input from: " + testInputFile);
-        testinputs = new ArrayList<>();
-        Scanner scanner = null;
+    /**
+     * Whether the test class drives a browser from the shared driver pool. Browserless
+     * classes return false so a run of only those does not launch browsers.
+     */
+    protected boolean usesBrowser() {
+        return true;
+    }
 
-        try {
-            File file = new File(testInputFile);
-
-            scanner = new Scanner(file);
-            while ( scanner.hasNextLine() ) {
-                HashMap<String, String> arg = new HashMap<>();
-                String line = scanner.nextLine();
-                if (!line.isEmpty()) {
-                    String[] nvPairs = line.split(",");
-                    for (String nvPair: nvPairs) {
-                        String name = nvPair.split("=")[0];
-                        String value= nvPair.split("=")[1];
-                        arg.put(name, value);
-                        logger.info(name + "=" + value);
-                    }
-                    testinputs.add(arg);
+    private static boolean suiteUsesBrowser() {
+        // @BeforeSuite cannot take an ITestContext; the running configuration method's result has it
+        ITestContext context = Reporter.getCurrentTestResult().getTestContext();
+        return Arrays.stream(context.getAllTestMethods())
+                .map(ITestNGMethod::getInstance)
+                .anyMatch(instance -> instance instanceof BaseTest test && test.usesBrowser());
+    }
+
+    /**
+     * Browser sessions the suite uses at once: the worker thread count when running in parallel.
+     */
+    private static int getConcurrency() {
+        return XmlSuite.ParallelMode.getValidParallel(config.getParallelMode()) == XmlSuite.ParallelMode.NONE
+                ? 1 : config.getThreadCount();
+    }
+
+    protected static WebDriver launchBrowser() {
+        logger.info("========Browser session Started========");
+        return getDriverFactory().createDriver();
+    }
+
+    protected static synchronized DriverFactory getDriverFactory() {
+        if (driverFactory == null) {
+            driverFactory = new DriverFactory(config);
+            logger.info("Browser launch profile: {}", driverFactory.getProfile());
+            if (config.getBoolean("test.blockRequests", false)) {
+                RequestBlockingRules rules = RequestBlockingRules.from(config, baseURL != null ? baseURL : config.getBaseURL());
+                if (config.getBoolean("test.localServer", false)) {
+                    // the local server's fake ads and analytics, served from its own third-party origin
+                    LocalCalculatorServer server = LocalCalculatorServer.start(config.getInt("test.localServer.port", 0));
+                    rules = rules.denying(RequestBlockingRules.hostOf(server.getThirdPartyBaseURL()));
                 }
+                driverFactory.blockRequests(rules);
+                logger.info("Blocking requests: {}", rules);
             }
         }
-        catch( Exception e ){
-            logger.severe("fail to load test case input");
+        return driverFactory;
+    }
+
+    protected static synchronized DriverPool getDriverPool() {
+        if (driverPool == null) {
+            driverPool = new DriverPool(BaseTest::launchBrowser, getDriverFactory()::quit, config.getPoolSize(), config.getPoolMaxReuse());
+            logger.info("Driver pool created: size={} maxReuse={}", driverPool.getSize(), driverPool.getMaxReuse());
         }
-        if (scanner != null) scanner.close();
+        return driverPool;
     }
 
-    protected static HashMap<String, String> getTestdata(String testName) {
-        for (HashMap<String, String> input: testinputs) {
-            String tc = input.get("tc");
-            if (tc != null && tc.equalsIgnoreCase(testName)) {
-                logger.info("found test data for " + testName);
-                return input;
-            }
+    public void initializeUITest() {
+        logger.info("base URL={} browser type={} pageLoad Timeout={}", getBaseURL(), config.getBrowser(), config.getPageLoadTimeout());
+        if (driver.get() == null)
+            driver.set(getDriverPool().lease());
+        carbCalPage.set(new CarbCalculatorPage(driver.get()));
+        navigateToHomePage();
+    }
+
+    protected WebDriver getDriver() {
+        return driver.get();
+    }
+
+    protected CarbCalculatorPage getCarbCalPage() {
+        return carbCalPage.get();
+    }
+
+    /**
+     * Request blocker of this thread's browser when test.blockRequests is on, otherwise null.
+     */
+    protected RequestBlocker getRequestBlocker() {
+        return getDriverFactory().getRequestBlocker(driver.get());
+    }
+
+    protected static synchronized void loadTestCaseInput(String testInputFile) {
+        if (testData != null && testData.getFile().equals(Path.of(testInputFile)))
+            return;
+        logger.info("load test input from: {}", testInputFile);
+        testData = TestDataStore.open(testInputFile);
+        // parse and index now, while the prewarmed browsers are still starting
+        testData.size();
+    }
+
+    protected static Map<String, String> getTestdata(String testName) {
+        TestDataStore.Row row = getTestRow(testName);
+        return row == null ? null : row.asMap();
+    }
+
+    protected static TestDataStore.Row getTestRow(String testName) {
+        TestDataStore.Row row = testData.find(testName);
+        DependencyTrace.record(ChangeAwareSelector.dataDependency(testData.getFile(), testName));
+        if (row == null) {
+            logger.info("test data not available for {}", testName);
+        } else {
+            logger.info("found test data for {} at {}", testName, row);
         }
-        logger.info("test data not available for "+ testName);
-        return null;
+        return row;
+    }
+
+    /**
+     * Streams every row of test.bulkDataFile whose tc matches the test method, so a test
+     * can run over thousands of input combinations with one report entry per row.
+     * Thread count comes from test.dataProviderThreadCount. In a sharded run only the
+     * rows of this shard are handed out. The file is read line by line, but TestNG drains
+     * a parallel provider before scheduling its invocations, so every matching row is held
+     * in memory for the run of the method; rows of other test methods never are.
+     */
+    @DataProvider(name = "bulkData", parallel = true)
+    public static Iterator<Object[]> bulkData(Method method) {
+        String file = config.getString("test.bulkDataFile", "src/main/resources/dataset/CarbCalculatorTestData.txt");
+        logger.info("stream test input for {} from: {}", method.getName(), file);
+        TestDataStream rows = TestDataStream.forTest(file, method.getName());
+        ShardPlan shard = ShardPlan.current();
+        return shard == null ? rows : shard.filterRows(method.getDeclaringClass(), method.getName(), rows);
+    }
+
+    /**
+     * Generated form inputs covering every pair (test.pairwise.strength: every t-way
+     * combination) of calculator input values, see CarbInputSpace; rows are numbered like
+     * data file lines. The row count and coverage are logged and written to
+     * test.pairwise.report. In a sharded run only the rows of this shard are handed out.
+     */
+    @DataProvider(name = "pairwiseData", parallel = true)
+    public static Iterator<Object[]> pairwiseData(Method method) {
+        CoveringArray.Result result = CarbInputSpace.generate(config.getInt("test.pairwise.strength", 2),
+                config.getInt("test.pairwise.maxRows", 0));
+        logger.info("Generated input for {}: {}", method.getName(), result.summary());
+        CarbInputSpace.writeReport(result, Path.of(config.getString("test.pairwise.report",
+                "target/surefire-reports/pairwise-coverage.json")));
+        Iterator<Object[]> rows = CarbInputSpace.dataRows(result).stream().map(row -> new Object[]{row}).iterator();
+        ShardPlan shard = ShardPlan.current();
+        return shard == null ? rows : shard.filterRows(method.getDeclaringClass(), method.getName(), rows);
+    }
+
+    /**
+     * True when form input should be entered with CarbCalculatorPage.fastFill instead of keystrokes.
+     */
+    protected boolean isFastFill() {
+        return config.getBoolean("test.fastFill", false);
+    }
+
+    /**
+     * Cache of results already verified against the reference engine, or null when
+     * test.resultCache is off.
+     */
+    protected static ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Relative tolerance for result numbers checked against the reference engine.
+     */
+    protected static double getOracleTolerance() {
+        return config.getDouble("test.oracle.tolerance", 0.01);
+    }
+
+    /**
+     * Form input for one data row (age, gender, cm/kg or feet/inch/pound, activity,
+     * and formula/bodyFat when the row has them).
+     */
+    protected static CarbFormInput toFormInput(Function<String, String> data, boolean usUnits) {
+        DependencyTrace.record("method:" + BaseTest.class.getName() + "#toFormInput");
+        CarbFormInput input = usUnits
+                ? CarbFormInput.us(data.apply("age"), data.apply("gender"),
+                        data.apply("feet"), data.apply("inch"), data.apply("pound"), data.apply("activity"))
+                : CarbFormInput.metric(data.apply("age"), data.apply("gender"),
+                        data.apply("cm"), data.apply("kg"), data.apply("activity"));
+        String formula = data.apply("formula");
+        return formula == null ? input : input.withFormula(formula, data.apply("bodyFat"));
     }
 
-    public void cleanUp() {
+    /**
+     * Returns the test's driver to the pool, or quits it when the test failed with a
+     * WebDriver error and the session no longer answers, so the next lease does not get it.
+     */
+    public void cleanUp(ITestResult result) {
         logger.info("===== Browser Session End =====");
+        if (carbCalPage.get() != null)
+            logger.info("Carb calculator page {}", carbCalPage.get().getElementCache());
+        WebDriver driver = BaseTest.driver.get();
         try {
-            if (driver != null) {
-                driver.quit();
-                logger.info("Driver quit successfully");
+            if (driver == null) {
+                logger.warn("Driver is null — no browser session to release.");
+            } else if (isSessionLost(driver, result)) {
+                getDriverPool().discard(driver);
+                logger.warn("Driver session lost after {}, quit instead of returned to the pool",
+                        result.getThrowable().toString());
             } else {
-                logger.warning("Driver is null — no browser session to quit.");
+                getDriverPool().release(driver);
+                logger.info("Driver returned to the session pool");
             }
         } catch (Exception e) {
-            logger.log(java.util.logging.Level.SEVERE, "Driver failed to quit", e);
+            logger.error("Driver failed to return to the pool", e);
         } finally {
-            driver = null;
+            BaseTest.driver.remove();
+            carbCalPage.remove();
+        }
+    }
+
+    // only a WebDriver failure can mean a dead session; a failed assertion leaves it healthy
+    private static boolean isSessionLost(WebDriver driver, ITestResult result) {
+        if (result == null || !(result.getThrowable() instanceof WebDriverException))
+            return false;
+        try {
+            driver.getWindowHandle();
+            return false;
+        } catch (WebDriverException e) {
+            return true;
+        }
+    }
+
+    @AfterSuite(alwaysRun = true)
+    public void shutDownDriverPool() {
+        LocalCalculatorServer.stopIfRunning();
+        synchronized (BaseTest.class) {
+            if (driverPool != null) {
+                driverPool.shutdown();
+                driverPool = null;
+            }
+            if (driverFactory != null)
+                driverFactory.logSummary();
+            if (resultCache != null) {
+                // parallel shards would overwrite each other's cache; ShardReportMerger merges their copies
+                if (ShardListener.isSharded())
+                    resultCache.save(ShardListener.reportDir().resolve(RESULT_CACHE_FILE_NAME));
+                else
+                    resultCache.save();
+                logger.info(resultCache.summary());
+                resultCache = null;
+            }
+            TimeoutManager timeouts = TimeoutManager.active();
+            if (timeouts != null) {
+                if (ShardListener.isSharded())
+                    timeouts.saveRun(ShardListener.reportDir().resolve(WAIT_LATENCIES_FILE_NAME));
+                else
+                    timeouts.save();
+                writeTimeoutReport(timeouts);
+                logger.info(timeouts.summary());
+                TimeoutManager.install(null);
+            }
+        }
+    }
+
+    private static void writeTimeoutReport(TimeoutManager timeouts) {
+        Path report = Path.of(config.getString("test.adaptiveTimeouts.report", "target/surefire-reports/wait-timeouts.json"));
+        try {
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            Files.writeString(report, timeouts.reportJson(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Cannot write wait timeout report {}", report, e);
         }
     }
 
     public void navigateToHomePage() {
-        logger.info("refresh to the original home page: " + baseURL);
-        driver.navigate().to(baseURL);
+        logger.info("refresh to the original home page: {}", getBaseURL());
+        getDriverFactory().navigate(driver.get(), getBaseURL());
     }
 
     public String getBaseURL() {
-        return baseURL;
+        return baseURL != null ? baseURL : config.getBaseURL();
     }
 }
@@ -0,0 +1,56 @@
+package base;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.bidi.module.Network;
+import org.openqa.selenium.bidi.network.AddInterceptParameters;
+import org.openqa.selenium.bidi.network.ContinueRequestParameters;
+import org.openqa.selenium.bidi.network.InterceptPhase;
+
+/**
+ * Request blocking for Firefox through the WebDriver BiDi network module (Firefox no longer
+ * exposes DevTools): every request is intercepted before it is sent and failed or continued.
+ * Needs a session started with BiDi enabled (webSocketUrl capability).
+ */
+final class BidiRequestBlocker extends RequestBlocker {
+
+    private final Network network;
+    private final String topLevelContext;
+    private final String interceptId;
+
+    BidiRequestBlocker(WebDriver driver, RequestBlockingRules rules) {
+        super(rules);
+        this.topLevelContext = driver.getWindowHandle();
+        this.network = new Network(driver);
+        network.onBeforeRequestSent(event -> {
+            if (!event.isBlocked())
+                return;
+            String requestId = event.getRequest().getRequestId();
+            String url = event.getRequest().getUrl();
+            if (event.getNavigationId() != null && topLevelContext.equals(event.getBrowsingContextId()))
+                onNavigation(url);
+            try {
+                if (decide(url)) {
+                    network.failRequest(requestId);
+                } else {
+                    network.continueRequest(new ContinueRequestParameters(requestId));
+                }
+            } catch (WebDriverException e) {
+                logger.debug("Cannot resolve intercepted request {}: {}", url, e.getMessage());
+            }
+        });
+        network.onResponseCompleted(event -> onBytesReceived(event.getResponseData().getBytesReceived()));
+        this.interceptId = network.addIntercept(new AddInterceptParameters(InterceptPhase.BEFORE_REQUEST_SENT));
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            network.removeIntercept(interceptId);
+            network.close();
+        } catch (WebDriverException e) {
+            logger.debug("Cannot remove request interception: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package base;
+
+import org.openqa.selenium.PageLoadStrategy;
+
+/**
+ * Browser launch settings selected with test.profile. Each setting is read from
+ * profile.&lt;name&gt;.&lt;setting&gt; and falls back to the built-in default below.
+ */
+public record BrowserProfile(
+        String name,
+        boolean headless,
+        int windowWidth,
+        int windowHeight,
+        PageLoadStrategy pageLoadStrategy,
+        boolean disableImages,
+        boolean disableExtensions,
+        boolean disableGpu,
+        boolean disableBackgroundNetworking
+) {
+
+    public static BrowserProfile from(TestConfig config) {
+        return from(config, config.getString("test.profile", "default"));
+    }
+
+    public static BrowserProfile from(TestConfig config, String name) {
+        String prefix = "profile." + name + ".";
+
+        // empty windowSize keeps the old maximize() behaviour
+        int width = 0;
+        int height = 0;
+        String windowSize = config.getString(prefix + "windowSize", "");
+        if (!windowSize.isEmpty()) {
+            String[] size = windowSize.toLowerCase().split("x");
+            if (size.length != 2)
+                throw new IllegalArgumentException("Invalid " + prefix + "windowSize, expected WIDTHxHEIGHT: " + windowSize);
+            width = Integer.parseInt(size[0].trim());
+            height = Integer.parseInt(size[1].trim());
+        }
+
+        String strategy = config.getString(prefix + "pageLoadStrategy", "normal");
+        PageLoadStrategy pageLoadStrategy = PageLoadStrategy.fromString(strategy);
+        if (pageLoadStrategy == null)
+            throw new IllegalArgumentException("Invalid " + prefix + "pageLoadStrategy: " + strategy);
+
+        return new BrowserProfile(
+                name,
+                config.getBoolean(prefix + "headless", false),
+                width,
+                height,
+                pageLoadStrategy,
+                config.getBoolean(prefix + "disableImages", false),
+                config.getBoolean(prefix + "disableExtensions", false),
+                config.getBoolean(prefix + "disableGpu", false),
+                config.getBoolean(prefix + "disableBackgroundNetworking", false)
+        );
+    }
+
+    public boolean hasFixedViewport() {
+        return windowWidth > 0 && windowHeight > 0;
+    }
+}
@@ -0,0 +1,153 @@
+package base;
+
+import Oracle.ActivityLevel;
+import Oracle.BmrFormula;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The calculator form as a combinatorial model for CoveringArray: unit system, gender,
+ * every activity level and BMR formula, the ages at and next to the 18-80 boundaries,
+ * heights and weights at the low and high end of the range and in between, and body fat
+ * (which only counts with Katch-McArdle). Ages 17 and 81 get single-fault rows that expect
+ * the age boundary warning. Generated rows use the fields of the data file (cm/kg or
+ * feet/inch/pound, activity, formula, bodyFat) under tc={@value #TEST_CASE}, so they can
+ * feed the pairwiseData provider directly or be written to a data file:
+ * {@code CarbInputSpace <output file> [strength] [max rows]}.
+ */
+public final class CarbInputSpace {
+
+    private final static Logger logger = LogManager.getLogger(CarbInputSpace.class);
+
+    public static final String TEST_CASE = "verifyCarbCalculatorPairwiseInputs";
+
+    private static final List<String> AGES = List.of("18", "19", "45", "79", "80");
+    private static final List<String> INVALID_AGES = List.of("17", "81");
+    private static final List<String> LEVELS = List.of("low", "mid", "high");
+    // low/mid/high height and weight per unit system, the same span as the HTTP sweep
+    private static final Map<String, String[]> METRIC = Map.of(
+            "low", new String[]{"140", "40"},
+            "mid", new String[]{"170", "70"},
+            "high", new String[]{"210", "140"});
+    private static final Map<String, String[]> US = Map.of(
+            "low", new String[]{"4", "7", "90"},
+            "mid", new String[]{"5", "7", "155"},
+            "high", new String[]{"6", "11", "300"});
+    private static final List<String> BODY_FAT = List.of("5", "20", "45");
+
+    private CarbInputSpace() {
+    }
+
+    public static CoveringArray.Result generate(int strength, int maxRows) {
+        // largest parameters first, so the first rows pair the values that need the most rows
+        return new CoveringArray(strength)
+                .parameter("activity", Arrays.stream(ActivityLevel.values()).map(CarbInputSpace::activityText).toList())
+                .parameter("age", AGES)
+                .parameter("height", LEVELS)
+                .parameter("weight", LEVELS)
+                .parameter("formula", Arrays.stream(BmrFormula.values()).map(BmrFormula::getLabel).toList())
+                .parameter("bodyFat", BODY_FAT)
+                .parameter("units", List.of("metric", "us"))
+                .parameter("gender", List.of("male", "female"))
+                .invalidValues("age", INVALID_AGES)
+                .activeWhen("bodyFat", "formula", Set.of(BmrFormula.KATCH_MCARDLE.getLabel()))
+                .generate(maxRows);
+    }
+
+    /**
+     * The rows of test.pairwise.strength and test.pairwise.maxRows, as the pairwiseData provider hands them out.
+     */
+    static List<TestDataStream.DataRow> configuredRows(TestConfig config) {
+        return dataRows(generate(config.getInt("test.pairwise.strength", 2), config.getInt("test.pairwise.maxRows", 0)));
+    }
+
+    /**
+     * Covering rows then invalid-value rows, numbered from 1 like the lines of a data file.
+     */
+    static List<TestDataStream.DataRow> dataRows(CoveringArray.Result result) {
+        String source = "pairwise-" + result.strength() + "way";
+        List<TestDataStream.DataRow> rows = new ArrayList<>();
+        for (Map<String, String> combination : allRows(result))
+            rows.add(new TestDataStream.DataRow(source, rows.size() + 1, toFields(combination), null));
+        return rows;
+    }
+
+    private static List<Map<String, String>> allRows(CoveringArray.Result result) {
+        List<Map<String, String>> rows = new ArrayList<>(result.rows());
+        rows.addAll(result.invalidRows());
+        return rows;
+    }
+
+    /**
+     * Data file fields of a generated combination, in the order of the existing rows.
+     */
+    static Map<String, String> toFields(Map<String, String> combination) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("tc", TEST_CASE);
+        fields.put("age", combination.get("age"));
+        fields.put("gender", combination.get("gender"));
+        if (combination.get("units").equals("us")) {
+            fields.put("feet", US.get(combination.get("height"))[0]);
+            fields.put("inch", US.get(combination.get("height"))[1]);
+            fields.put("pound", US.get(combination.get("weight"))[2]);
+        } else {
+            fields.put("cm", METRIC.get(combination.get("height"))[0]);
+            fields.put("kg", METRIC.get(combination.get("weight"))[1]);
+        }
+        fields.put("activity", combination.get("activity"));
+        fields.put("formula", combination.get("formula"));
+        fields.put("bodyFat", combination.get("bodyFat"));
+        return fields;
+    }
+
+    // the option text up to the colon, e.g. "Very Active"; the rest has commas the data file cannot hold
+    private static String activityText(ActivityLevel level) {
+        String text = level.getOptionText();
+        int colon = text.indexOf(':');
+        return colon < 0 ? text : text.substring(0, colon);
+    }
+
+    public static void writeReport(CoveringArray.Result result, Path report) {
+        try {
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            Files.writeString(report, new Json().toJson(result.toReport()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Cannot write pairwise coverage report {}", report, e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: CarbInputSpace <output file> [strength] [max rows]");
+            System.exit(2);
+        }
+        Path output = Path.of(args[0]);
+        CoveringArray.Result result = generate(args.length > 1 ? Integer.parseInt(args[1]) : 2,
+                args.length > 2 ? Integer.parseInt(args[2]) : 0);
+        List<String> lines = new ArrayList<>();
+        for (Map<String, String> combination : allRows(result)) {
+            StringBuilder line = new StringBuilder();
+            toFields(combination).forEach((name, value) -> line.append(line.isEmpty() ? "" : ",").append(name).append('=').append(value));
+            lines.add(line.toString());
+        }
+        if (output.toAbsolutePath().getParent() != null)
+            Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, lines, StandardCharsets.UTF_8);
+        Path report = output.resolveSibling(output.getFileName() + ".coverage.json");
+        writeReport(result, report);
+        logger.info("Wrote {} row(s) to {}, coverage report {}", lines.size(), output, report);
+        logger.info(result.summary());
+    }
+}
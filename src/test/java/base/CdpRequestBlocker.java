@@ -0,0 +1,76 @@
+package base;
+
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.DevToolsException;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.json.Json;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request blocking for Chrome and Edge through the DevTools Fetch domain: every request
+ * pauses at the request stage and is failed with BlockedByClient or continued. Uses the raw
+ * protocol method names, so it does not depend on a browser-version-specific devtools module.
+ */
+final class CdpRequestBlocker extends RequestBlocker {
+
+    private static final Event<Map<String, Object>> REQUEST_PAUSED =
+            new Event<>("Fetch.requestPaused", input -> input.read(Json.MAP_TYPE));
+    private static final Event<Map<String, Object>> LOADING_FINISHED =
+            new Event<>("Network.loadingFinished", input -> input.read(Json.MAP_TYPE));
+
+    private final DevTools devTools;
+    private final String mainFrameId;
+
+    CdpRequestBlocker(DevTools devTools, RequestBlockingRules rules) {
+        super(rules);
+        this.devTools = devTools;
+        devTools.createSessionIfThereIsNotOne();
+        this.mainFrameId = mainFrameId(devTools.send(new Command<Map<String, Object>>("Page.getFrameTree", Map.of(),
+                input -> input.read(Json.MAP_TYPE))));
+
+        devTools.addListener(REQUEST_PAUSED, this::onRequestPaused);
+        devTools.addListener(LOADING_FINISHED, event -> {
+            if (event.get("encodedDataLength") instanceof Number bytes)
+                onBytesReceived(bytes.longValue());
+        });
+        devTools.send(new Command<>("Network.enable", Map.of()));
+        devTools.send(new Command<>("Fetch.enable",
+                Map.of("patterns", List.of(Map.of("urlPattern", "*", "requestStage", "Request")))));
+    }
+
+    private void onRequestPaused(Map<String, Object> event) {
+        String requestId = (String) event.get("requestId");
+        String url = String.valueOf(((Map<?, ?>) event.get("request")).get("url"));
+        if ("Document".equals(event.get("resourceType")) && mainFrameId.equals(event.get("frameId")))
+            onNavigation(url);
+        try {
+            if (decide(url)) {
+                devTools.send(new Command<>("Fetch.failRequest",
+                        Map.of("requestId", requestId, "errorReason", "BlockedByClient")));
+            } else {
+                devTools.send(new Command<>("Fetch.continueRequest", Map.of("requestId", requestId)));
+            }
+        } catch (DevToolsException e) {
+            // the page navigated away or the session closed while the request was paused
+            logger.debug("Cannot resolve paused request {}: {}", url, e.getMessage());
+        }
+    }
+
+    private static String mainFrameId(Map<String, Object> frameTree) {
+        Map<?, ?> tree = (Map<?, ?>) frameTree.get("frameTree");
+        return String.valueOf(((Map<?, ?>) tree.get("frame")).get("id"));
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            devTools.send(new Command<>("Fetch.disable", Map.of()));
+        } catch (DevToolsException e) {
+            logger.debug("Cannot disable request interception: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package base;
+
+import Common.DependencyTrace;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Change-aware selection of browser tests (test.selection). While a test runs it records
+ * what the test touched: its data rows, the page-object methods and @FindBy locators it
+ * used (DependencyTrace), the oracle and result parsing code its assertions ran through,
+ * its own method, and the target it ran against (site, browser, profile and the settings
+ * that change what the test does). At the end of the suite every dependency is
+ * fingerprinted (DependencyFingerprints) and kept per test method in test.selection.file.
+ * The next run only executes the browser tests that have no record, did not pass last
+ * time, or have a dependency whose fingerprint changed; the others are dropped before
+ * TestNG schedules them and listed with the reason in test.selection.report.
+ * test.selection.full=true runs everything and records afresh. A shard of a sharded run
+ * writes its records to shard.reportDir instead, for ShardReportMerger to fold in.
+ * Registered through the surefire configuration.
+ */
+public class ChangeAwareSelector implements IMethodInterceptor, IInvokedMethodListener, ISuiteListener {
+
+    private final static Logger logger = LogManager.getLogger(ChangeAwareSelector.class);
+
+    private static final int FILE_VERSION = 2;
+    static final String RECORDS_FILE_NAME = "test-dependencies.json";
+
+    private final Map<String, Recorded> recorded = new ConcurrentHashMap<>();
+    private final List<Map<String, Object>> decisions = new ArrayList<>();
+    private Map<String, Map<String, Object>> history;
+
+    private static final class Recorded {
+        final Set<String> dependencies = new LinkedHashSet<>();
+        boolean passed = true;
+    }
+
+    private static boolean enabled() {
+        return TestConfig.get().getBoolean("test.selection", false);
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        // page objects only trace while selection is on
+        DependencyTrace.setEnabled(enabled());
+    }
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!enabled())
+            return methods;
+        boolean full = TestConfig.get().getBoolean("test.selection.full", false);
+        DependencyFingerprints fingerprints = fingerprints();
+        List<IMethodInstance> selected = new ArrayList<>();
+        int skipped = 0;
+        synchronized (this) {
+            for (IMethodInstance method : methods) {
+                String test = testKey(method.getMethod());
+                String reason = full ? "full run (test.selection.full)" : reasonToRun(method, test, fingerprints);
+                boolean run = reason != null;
+                if (run) {
+                    selected.add(method);
+                    logger.info("Running {}: {}", test, reason);
+                } else {
+                    skipped++;
+                    reason = "unchanged: " + dependenciesOf(test).size() + " recorded dependency(ies) since "
+                            + history().get(test).get("recordedAt");
+                    logger.info("Not running {}: {}", test, reason);
+                }
+                decisions.add(Map.of("test", test, "run", run, "reason", reason));
+            }
+        }
+        logger.info("Change-aware selection for '{}': running {} of {} test method(s), {} unchanged",
+                context.getName(), selected.size(), methods.size(), skipped);
+        return selected;
+    }
+
+    private String reasonToRun(IMethodInstance method, String test, DependencyFingerprints fingerprints) {
+        if (!(method.getInstance() instanceof BaseTest baseTest) || !baseTest.usesBrowser())
+            return "not a browser test";
+        return reasonToRun(history().get(test), fingerprints);
+    }
+
+    /**
+     * Why a test with this recorded run has to run, or null when none of its recorded
+     * dependencies changed.
+     */
+    @SuppressWarnings("unchecked")
+    static String reasonToRun(Map<String, Object> last, DependencyFingerprints fingerprints) {
+        if (last == null)
+            return "no recorded run";
+        if (!Boolean.TRUE.equals(last.get("passed")))
+            return "did not pass last run";
+        List<String> changed = new ArrayList<>();
+        ((Map<String, String>) last.get("dependencies")).forEach((dependency, fingerprint) -> {
+            String current = fingerprints.of(dependency);
+            if (current.equals(DependencyFingerprints.MISSING) || !current.equals(fingerprint))
+                changed.add(dependency);
+        });
+        if (changed.isEmpty())
+            return null;
+        return "changed: " + (changed.size() <= 3 ? changed : changed.subList(0, 3) + " and " + (changed.size() - 3) + " more");
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod() || !DependencyTrace.isEnabled())
+            return;
+        try {
+            if (testResult.getInstance() instanceof BaseTest test && test.usesBrowser())
+                record(testResult);
+        } finally {
+            DependencyTrace.reset();
+        }
+    }
+
+    private void record(ITestResult testResult) {
+        ITestNGMethod method = testResult.getMethod();
+        Recorded test = recorded.computeIfAbsent(testKey(method), key -> new Recorded());
+        synchronized (test) {
+            test.dependencies.add("method:" + method.getRealClass().getName() + "#" + method.getMethodName());
+            target(TestConfig.get()).keySet().forEach(setting -> test.dependencies.add("config:" + setting));
+            test.dependencies.addAll(DependencyTrace.current());
+            if (Arrays.stream(testResult.getParameters()).anyMatch(TestDataStream.DataRow.class::isInstance))
+                test.dependencies.add(dataDependency(TestConfig.get().getString("test.bulkDataFile",
+                        "src/main/resources/dataset/CarbCalculatorTestData.txt"), method.getMethodName()));
+            test.passed &= testResult.getStatus() == ITestResult.SUCCESS;
+        }
+    }
+
+    /**
+     * Dependency on the rows of a test data file for one tc.
+     */
+    static String dataDependency(Object file, String tc) {
+        return "data:" + file + "#" + tc;
+    }
+
+    @Override
+    public synchronized void onFinish(ISuite suite) {
+        if (!enabled())
+            return;
+        writeReport();
+        if (recorded.isEmpty())
+            return;
+        DependencyFingerprints fingerprints = fingerprints();
+        Map<String, Map<String, Object>> run = new LinkedHashMap<>();
+        String now = Instant.now().toString();
+        recorded.forEach((test, result) -> {
+            Map<String, String> dependencies = new LinkedHashMap<>();
+            result.dependencies.forEach(dependency -> dependencies.put(dependency, fingerprints.of(dependency)));
+            run.put(test, Map.of("passed", result.passed, "recordedAt", now, "dependencies", dependencies));
+        });
+        if (ShardListener.isSharded()) {
+            // the other shards would overwrite the history; ShardReportMerger folds this shard's records in
+            write(ShardListener.reportDir().resolve(RECORDS_FILE_NAME), run);
+            logger.info("Recorded the dependencies of {} test method(s) in {}", run.size(), ShardListener.reportDir());
+        } else {
+            Map<String, Map<String, Object>> tests = new LinkedHashMap<>(history());
+            tests.putAll(run);
+            write(historyFile(), tests);
+            logger.info("Recorded the dependencies of {} test method(s) in {}", run.size(), historyFile());
+        }
+        recorded.clear();
+        history = null;
+    }
+
+    private void writeReport() {
+        if (decisions.isEmpty())
+            return;
+        Path report = Path.of(TestConfig.get().getString("test.selection.report",
+                "target/surefire-reports/test-selection.json"));
+        try {
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            Files.writeString(report, new Json().toJson(Map.of("decisions", decisions)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Cannot write test selection report {}", report, e);
+        }
+        decisions.clear();
+    }
+
+    private static String testKey(ITestNGMethod method) {
+        return method.getRealClass().getName() + "#" + method.getMethodName();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> dependenciesOf(String test) {
+        return (Map<String, String>) history().get(test).get("dependencies");
+    }
+
+    /**
+     * What a browser test ran against: the site (the host of test.baseURL, or "local" for the
+     * in-JVM server), the browser and launch profile, and the settings that change how the
+     * form is filled and checked.
+     */
+    static Map<String, String> target(TestConfig config) {
+        Map<String, String> target = new LinkedHashMap<>();
+        target.put("site", config.getBoolean("test.localServer", false) ? "local" : siteOf(config.getBaseURL()));
+        target.put("test.browser", config.getBrowser());
+        target.put("test.profile", config.getString("test.profile", "default"));
+        target.put("test.fastFill", String.valueOf(config.getBoolean("test.fastFill", false)));
+        target.put("test.oracle.tolerance", String.valueOf(config.getDouble("test.oracle.tolerance", 0.01)));
+        return target;
+    }
+
+    private static String siteOf(String baseURL) {
+        if (baseURL == null)
+            return "";
+        try {
+            String host = URI.create(baseURL).getHost();
+            return host == null ? baseURL : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return baseURL;
+        }
+    }
+
+    private static DependencyFingerprints fingerprints() {
+        return new DependencyFingerprints(List.of(Path.of("src/main/java"), Path.of("src/test/java")),
+                target(TestConfig.get()));
+    }
+
+    private static Path historyFile() {
+        return Path.of(TestConfig.get().getString("test.selection.file", ".test-history/test-dependencies.json"));
+    }
+
+    private Map<String, Map<String, Object>> history() {
+        if (history == null)
+            history = read(historyFile());
+        return history;
+    }
+
+    /**
+     * Folds the records the shards of a sharded run wrote to their report directories into
+     * test.selection.file. A data-driven method that ran on several shards keeps the union of
+     * its dependencies and passed only if it passed on every shard.
+     */
+    static void mergeShardRecords(List<Path> shardDirs) {
+        Map<String, Map<String, Object>> run = new LinkedHashMap<>();
+        for (Path dir : shardDirs) {
+            if (Files.exists(dir.resolve(RECORDS_FILE_NAME)))
+                read(dir.resolve(RECORDS_FILE_NAME)).forEach((test, record) -> run.merge(test, record, ChangeAwareSelector::combine));
+        }
+        if (run.isEmpty())
+            return;
+        Map<String, Map<String, Object>> tests = new LinkedHashMap<>(read(historyFile()));
+        tests.putAll(run);
+        write(historyFile(), tests);
+        logger.info("Recorded the dependencies of {} test method(s) from {} shard(s) in {}", run.size(),
+                shardDirs.size(), historyFile());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> combine(Map<String, Object> one, Map<String, Object> other) {
+        Map<String, String> dependencies = new LinkedHashMap<>((Map<String, String>) one.get("dependencies"));
+        dependencies.putAll((Map<String, String>) other.get("dependencies"));
+        String recordedAt = String.valueOf(one.get("recordedAt")).compareTo(String.valueOf(other.get("recordedAt"))) >= 0
+                ? String.valueOf(one.get("recordedAt")) : String.valueOf(other.get("recordedAt"));
+        return Map.of("passed", Boolean.TRUE.equals(one.get("passed")) && Boolean.TRUE.equals(other.get("passed")),
+                "recordedAt", recordedAt, "dependencies", dependencies);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> read(Path file) {
+        Map<String, Map<String, Object>> tests = new LinkedHashMap<>();
+        if (!Files.exists(file))
+            return tests;
+        try {
+            Map<String, Object> content = new Json().toType(Files.readString(file, StandardCharsets.UTF_8), Json.MAP_TYPE);
+            if (content.get("version") instanceof Number version && version.intValue() == FILE_VERSION)
+                tests.putAll((Map<String, Map<String, Object>>) content.get("tests"));
+            else
+                logger.warn("Ignoring test dependency history {} of another format version", file);
+        } catch (IOException | JsonException | ClassCastException e) {
+            logger.warn("Ignoring unreadable test dependency history {}: {}", file, e.getMessage());
+        }
+        return tests;
+    }
+
+    private static void write(Path file, Map<String, Map<String, Object>> tests) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, new Json().toJson(Map.of("version", FILE_VERSION, "tests", tests)),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot write test dependency history {}", file, e);
+        }
+    }
+}
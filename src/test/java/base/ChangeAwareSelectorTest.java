@@ -0,0 +1,122 @@
+package base;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * ChangeAwareSelector: a passed test stays unselected only while it would run against the
+ * same target and through the same oracle code it was recorded with.
+ */
+public class ChangeAwareSelectorTest {
+
+    private static final String ENGINE = """
+            package Oracle;
+
+            public final class Engine {
+                // kcal per gram of carbohydrate
+                static double carbs(double calories) {
+                    return calories * 0.45 / 4;
+                }
+            }
+            """;
+
+    private static TestConfig config(String properties) throws IOException {
+        Path file = Files.createTempFile("test-config", ".properties");
+        try {
+            Files.writeString(file, properties, StandardCharsets.UTF_8);
+            return TestConfig.load(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // a passed run whose dependencies have the fingerprints they have now
+    private static Map<String, Object> passedRun(List<String> dependencies, DependencyFingerprints fingerprints) {
+        Map<String, String> recorded = new LinkedHashMap<>();
+        dependencies.forEach(dependency -> recorded.put(dependency, fingerprints.of(dependency)));
+        return Map.of("passed", true, "recordedAt", "2026-01-01T00:00:00Z", "dependencies", recorded);
+    }
+
+    private static List<String> targetDependencies(TestConfig config) {
+        return ChangeAwareSelector.target(config).keySet().stream().map(setting -> "config:" + setting).toList();
+    }
+
+    @Test
+    public void anotherSiteSelectsThePassedTest() throws IOException {
+        TestConfig recordedOn = config("test.baseURL=https://www.calculator.net/carbohydrate-calculator.html\n");
+        Map<String, Object> last = passedRun(targetDependencies(recordedOn),
+                new DependencyFingerprints(List.of(), ChangeAwareSelector.target(recordedOn)));
+
+        TestConfig samePage = config("test.baseURL=https://WWW.calculator.net/carbohydrate-calculator.html?ref=1\n");
+        Assert.assertNull(ChangeAwareSelector.reasonToRun(last,
+                new DependencyFingerprints(List.of(), ChangeAwareSelector.target(samePage))));
+
+        TestConfig otherSite = config("test.baseURL=https://staging.calculator.net/carbohydrate-calculator.html\n");
+        String reason = ChangeAwareSelector.reasonToRun(last,
+                new DependencyFingerprints(List.of(), ChangeAwareSelector.target(otherSite)));
+        Assert.assertNotNull(reason);
+        Assert.assertTrue(reason.contains("config:site"), reason);
+
+        TestConfig local = config("test.baseURL=https://www.calculator.net/carbohydrate-calculator.html\n"
+                + "test.localServer=true\n");
+        Assert.assertNotNull(ChangeAwareSelector.reasonToRun(last,
+                new DependencyFingerprints(List.of(), ChangeAwareSelector.target(local))));
+    }
+
+    @Test
+    public void anotherBrowserOrToleranceSelectsThePassedTest() throws IOException {
+        TestConfig recordedOn = config("test.baseURL=https://www.calculator.net/\ntest.browser=chrome\n");
+        Map<String, Object> last = passedRun(targetDependencies(recordedOn),
+                new DependencyFingerprints(List.of(), ChangeAwareSelector.target(recordedOn)));
+
+        for (String changed : List.of("test.browser=firefox\n", "test.browser=chrome\ntest.oracle.tolerance=0.05\n",
+                "test.browser=chrome\ntest.fastFill=true\n", "test.browser=chrome\ntest.profile=headless\n")) {
+            TestConfig config = config("test.baseURL=https://www.calculator.net/\n" + changed);
+            Assert.assertNotNull(ChangeAwareSelector.reasonToRun(last,
+                    new DependencyFingerprints(List.of(), ChangeAwareSelector.target(config))), changed);
+        }
+    }
+
+    @Test
+    public void anEditedOracleSelectsThePassedTest() throws IOException {
+        Path root = Files.createTempDirectory("selector");
+        try {
+            Path file = root.resolve("Oracle/Engine.java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, ENGINE, StandardCharsets.UTF_8);
+            Map<String, Object> last = passedRun(List.of("source:Oracle.Engine"),
+                    new DependencyFingerprints(List.of(root), Map.of()));
+
+            Files.writeString(file, ENGINE.replace("// kcal per gram of carbohydrate", "/* 4 kcal/g */"),
+                    StandardCharsets.UTF_8);
+            Assert.assertNull(ChangeAwareSelector.reasonToRun(last, new DependencyFingerprints(List.of(root), Map.of())),
+                    "comments do not count");
+
+            Files.writeString(file, ENGINE.replace("0.45", "0.55"), StandardCharsets.UTF_8);
+            Assert.assertEquals(ChangeAwareSelector.reasonToRun(last, new DependencyFingerprints(List.of(root), Map.of())),
+                    "changed: [source:Oracle.Engine]");
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void runsWithoutAPassedRecord() {
+        DependencyFingerprints fingerprints = new DependencyFingerprints(List.of(), Map.of());
+        Assert.assertEquals(ChangeAwareSelector.reasonToRun(null, fingerprints), "no recorded run");
+        Assert.assertEquals(ChangeAwareSelector.reasonToRun(Map.of("passed", false, "dependencies", Map.of()), fingerprints),
+                "did not pass last run");
+    }
+}
@@ -0,0 +1,18 @@
+package base;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of WebDriver commands a test may issue, its @BeforeMethod setup included.
+ * A passing test that goes over the budget is failed by CommandBudgetListener, so
+ * round-trip regressions (e.g. a new per-cell loop) are caught. Overrides test.commandBudget.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CommandBudget {
+
+    int value();
+}
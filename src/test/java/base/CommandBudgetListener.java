@@ -0,0 +1,83 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * After every browser test, logs and writes (to test.commandStats.dir) the WebDriver
+ * commands counted by CommandStats, and fails a passing test that exceeded its command
+ * budget (@CommandBudget, else test.commandBudget; 0 means no budget).
+ * Registered through the surefire configuration.
+ */
+public class CommandBudgetListener implements IInvokedMethodListener {
+
+    private final static Logger logger = LogManager.getLogger(CommandBudgetListener.class);
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod())
+            return;
+        try {
+            // browserless tests issue no commands
+            if (CommandStats.totalCalls() > 0)
+                account(testResult);
+        } finally {
+            CommandStats.reset();
+        }
+    }
+
+    private void account(ITestResult testResult) {
+        String testName = ActionTimingListener.reportName(testResult);
+        long calls = CommandStats.totalCalls();
+        long wireMillis = CommandStats.totalWireNanos() / 1_000_000;
+        int budget = budgetOf(testResult);
+        logger.info("{}: {} WebDriver commands, {} ms on the wire{}, by command: {}",
+                testName, calls, wireMillis, budget > 0 ? " (budget " + budget + ")" : "", CommandStats.current());
+        write(testName, calls, wireMillis, budget);
+
+        if (budget > 0 && calls > budget && testResult.getStatus() == ITestResult.SUCCESS) {
+            testResult.setStatus(ITestResult.FAILURE);
+            testResult.setThrowable(new AssertionError(testName + " issued " + calls
+                    + " WebDriver commands, over its budget of " + budget + ": " + CommandStats.current()));
+        }
+    }
+
+    private static int budgetOf(ITestResult testResult) {
+        Method method = testResult.getMethod().getConstructorOrMethod().getMethod();
+        CommandBudget annotation = method == null ? null : method.getAnnotation(CommandBudget.class);
+        return annotation != null ? annotation.value() : TestConfig.get().getInt("test.commandBudget", 0);
+    }
+
+    private static void write(String testName, long calls, long wireMillis, int budget) {
+        Map<String, Object> commands = new LinkedHashMap<>();
+        for (CommandStats.CommandCount count : CommandStats.current()) {
+            commands.put(count.command(), Map.of("calls", count.calls(), "wireMs", count.wireNanos() / 1_000_000));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("test", testName);
+        report.put("calls", calls);
+        report.put("wireMs", wireMillis);
+        report.put("budget", budget);
+        report.put("commands", commands);
+
+        Path dir = Path.of(TestConfig.get().getString("test.commandStats.dir", "target/surefire-reports/command-stats"));
+        try {
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve(testName + ".json"), new Json().toJson(report), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Cannot write command stats for {}", testName, e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package base;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WebDriverListener that counts the driver commands a test thread issues, by command
+ * ("WebElement.getText", "WebDriver.findElement", ...), with the wire time spent in each.
+ * Every PageFactory proxy access, element call and explicit-wait poll goes through the
+ * decorated driver and shows up here. The figures are per thread and are reset after each test.
+ */
+public final class CommandStats implements WebDriverListener {
+
+    // accessors that only hand out another local interface, no request to the driver
+    private static final Set<Class<?>> LOCAL_RETURN_TYPES = Set.of(
+            WebDriver.Options.class, WebDriver.Navigation.class, WebDriver.TargetLocator.class,
+            WebDriver.Timeouts.class, WebDriver.Window.class);
+    private static final Set<String> LOCAL_METHODS = Set.of("getWrappedDriver", "getWrappedElement");
+
+    private static final ThreadLocal<Map<String, Counter>> counters = ThreadLocal.withInitial(LinkedHashMap::new);
+    private static final ThreadLocal<Deque<Long>> callStarts = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Calls and total wire time of one command type.
+     */
+    public record CommandCount(String command, long calls, long wireNanos) {
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        if (isCommand(method))
+            callStarts.get().push(System.nanoTime());
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        finish(target, method);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        finish(target, method);
+    }
+
+    /**
+     * Commands of the current thread since the last reset, most frequent first.
+     */
+    public static List<CommandCount> current() {
+        return counters.get().entrySet().stream()
+                .map(entry -> new CommandCount(entry.getKey(), entry.getValue().calls, entry.getValue().wireNanos))
+                .sorted(Comparator.comparingLong(CommandCount::calls).reversed())
+                .toList();
+    }
+
+    public static long totalCalls() {
+        return counters.get().values().stream().mapToLong(counter -> counter.calls).sum();
+    }
+
+    public static long totalWireNanos() {
+        return counters.get().values().stream().mapToLong(counter -> counter.wireNanos).sum();
+    }
+
+    public static void reset() {
+        counters.remove();
+        callStarts.remove();
+    }
+
+    private static void finish(Object target, Method method) {
+        if (!isCommand(method))
+            return;
+        Long start = callStarts.get().poll();
+        if (start == null)
+            return;
+        Counter counter = counters.get().computeIfAbsent(commandName(target, method), name -> new Counter());
+        counter.calls++;
+        counter.wireNanos += System.nanoTime() - start;
+    }
+
+    private static boolean isCommand(Method method) {
+        return method.getDeclaringClass() != Object.class
+                && !LOCAL_RETURN_TYPES.contains(method.getReturnType())
+                && !LOCAL_METHODS.contains(method.getName());
+    }
+
+    private static String commandName(Object target, Method method) {
+        String type;
+        if (target instanceof WebElement)
+            type = "WebElement";
+        else if (target instanceof WebDriver)
+            type = "WebDriver";
+        else
+            type = method.getDeclaringClass().getSimpleName();
+        return type + "." + method.getName();
+    }
+
+    private static final class Counter {
+        private long calls;
+        private long wireNanos;
+    }
+}
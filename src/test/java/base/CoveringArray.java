@@ -0,0 +1,381 @@
+package base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Greedy t-way covering array: a small set of rows in which every combination of values of
+ * any t parameters appears at least once (pairwise for t = 2). Rows are built one at a time
+ * from the first combination still uncovered, each further parameter taking the value that
+ * covers the most new combinations (ties go to the value used least so far), so the rows
+ * come out roughly in order of how much they add and a prefix of them is already a good
+ * sample. Deterministic: the same parameters always give the same rows.
+ * <p>
+ * A parameter can be active only for some values of another (body fat only counts with a
+ * formula that uses it): its values still fill every row, but combinations with it count
+ * as covered only by rows where it is active. Invalid values (an age outside the supported
+ * range) are not combined with each other; each gets one row of its own, a copy of a
+ * covering row, so a failure points at that one value.
+ */
+public final class CoveringArray {
+
+    private final int strength;
+    private final List<String> names = new ArrayList<>();
+    private final List<List<String>> values = new ArrayList<>();
+    private final Map<String, List<String>> invalidValues = new LinkedHashMap<>();
+    // dependent parameter -> its condition parameter and the values activating it
+    private final Map<Integer, Condition> conditions = new HashMap<>();
+
+    private record Condition(int parameter, Set<String> activating) {
+    }
+
+    /**
+     * Coverage of one strength: combinations a row set has to contain, and how many it does.
+     */
+    public record Coverage(int strength, long combinations, long covered) {
+
+        public double percent() {
+            return combinations == 0 ? 100 : covered * 100.0 / combinations;
+        }
+    }
+
+    /**
+     * Generated rows (parameter name to value, in declaration order), the single-fault rows
+     * of invalid values, the coverage for every strength up to the requested one, and the
+     * number of t-way combinations covered after each row.
+     */
+    public record Result(int strength, List<Map<String, String>> rows, List<Map<String, String>> invalidRows,
+                         long exhaustiveRows, List<Coverage> coverage, List<Long> coveredAfterRow) {
+
+        public Coverage strongest() {
+            return coverage.get(coverage.size() - 1);
+        }
+
+        /**
+         * The fewest rows covering at least the given percentage of t-way combinations, or -1
+         * when the rows (cut short by maxRows) never get there.
+         */
+        public int rowsFor(double percent) {
+            long combinations = strongest().combinations();
+            for (int i = 0; i < coveredAfterRow.size(); i++) {
+                if (combinations == 0 || coveredAfterRow.get(i) * 100.0 / combinations >= percent)
+                    return i + 1;
+            }
+            return -1;
+        }
+
+        public String summary() {
+            StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                    "%d-way covering array: %d row(s) + %d invalid-value row(s) instead of %d exhaustive",
+                    strength, rows.size(), invalidRows.size(), exhaustiveRows));
+            for (Coverage level : coverage)
+                summary.append(String.format(Locale.ROOT, "; %d-way %d/%d (%.1f%%)",
+                        level.strength(), level.covered(), level.combinations(), level.percent()));
+            for (int percent : new int[]{50, 90}) {
+                int needed = rowsFor(percent);
+                summary.append(needed < 0 ? String.format(Locale.ROOT, "; %d%% not reached", percent)
+                        : String.format(Locale.ROOT, "; %d%% after %d row(s)", percent, needed));
+            }
+            return summary.toString();
+        }
+
+        public Map<String, Object> toReport() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("strength", strength);
+            report.put("rows", rows.size());
+            report.put("invalidValueRows", invalidRows.size());
+            report.put("exhaustiveRows", exhaustiveRows);
+            List<Map<String, Object>> levels = new ArrayList<>();
+            for (Coverage level : coverage)
+                levels.add(Map.of("strength", level.strength(), "combinations", level.combinations(),
+                        "covered", level.covered(), "percent", level.percent()));
+            report.put("coverage", levels);
+            report.put("coveredAfterRow", coveredAfterRow);
+            return report;
+        }
+    }
+
+    public CoveringArray(int strength) {
+        if (strength < 1)
+            throw new IllegalArgumentException("Strength must be at least 1, got " + strength);
+        this.strength = strength;
+    }
+
+    public CoveringArray parameter(String name, List<String> parameterValues) {
+        if (parameterValues.isEmpty())
+            throw new IllegalArgumentException("Parameter " + name + " has no values");
+        names.add(name);
+        values.add(List.copyOf(parameterValues));
+        return this;
+    }
+
+    /**
+     * Values of a declared parameter that each get a single-fault row instead of being combined.
+     */
+    public CoveringArray invalidValues(String name, List<String> invalid) {
+        indexOf(name);
+        invalidValues.put(name, List.copyOf(invalid));
+        return this;
+    }
+
+    /**
+     * Makes a parameter count only in rows where the condition parameter has one of the given values.
+     */
+    public CoveringArray activeWhen(String name, String conditionParameter, Set<String> activating) {
+        conditions.put(indexOf(name), new Condition(indexOf(conditionParameter), Set.copyOf(activating)));
+        return this;
+    }
+
+    private int indexOf(String name) {
+        int index = names.indexOf(name);
+        if (index < 0)
+            throw new IllegalArgumentException("Unknown parameter: " + name);
+        return index;
+    }
+
+    /**
+     * Builds rows until every t-way combination is covered or maxRows (0 for no limit) is reached.
+     */
+    public Result generate(int maxRows) {
+        int t = Math.min(strength, names.size());
+        List<int[]> combos = parameterCombinations(t);
+        List<TreeSet<Integer>> uncovered = new ArrayList<>();
+        long combinations = 0;
+        for (int[] combo : combos) {
+            TreeSet<Integer> codes = required(combo);
+            uncovered.add(codes);
+            combinations += codes.size();
+        }
+
+        List<int[]> rows = new ArrayList<>();
+        List<Long> coveredAfterRow = new ArrayList<>();
+        int[][] usage = new int[names.size()][];
+        for (int p = 0; p < names.size(); p++)
+            usage[p] = new int[values.get(p).size()];
+        long covered = 0;
+        while (maxRows <= 0 || rows.size() < maxRows) {
+            int seed = 0;
+            while (seed < combos.size() && uncovered.get(seed).isEmpty())
+                seed++;
+            if (seed == combos.size())
+                break;
+            int[] row = newRow(combos.get(seed), uncovered.get(seed).first());
+            for (int p = 0; p < names.size(); p++) {
+                if (row[p] < 0)
+                    row[p] = bestValue(p, row, combos, uncovered, usage[p]);
+            }
+            for (int p = 0; p < names.size(); p++)
+                usage[p][row[p]]++;
+            for (int c = 0; c < combos.size(); c++) {
+                if (covers(row, combos.get(c)) && uncovered.get(c).remove(code(row, combos.get(c))))
+                    covered++;
+            }
+            rows.add(row);
+            coveredAfterRow.add(covered);
+        }
+
+        List<Coverage> coverage = new ArrayList<>();
+        for (int k = 1; k <= t; k++)
+            coverage.add(k == t ? new Coverage(t, combinations, covered) : coverage(rows, k));
+        List<Map<String, String>> named = rows.stream().map(this::named).toList();
+        return new Result(t, named, invalidRows(named), exhaustiveRows(), coverage, coveredAfterRow);
+    }
+
+    /**
+     * A row starting from the seed combination, with the condition parameters its
+     * conditional parameters need so the combination is actually covered.
+     */
+    private int[] newRow(int[] combo, int code) {
+        int[] row = new int[names.size()];
+        Arrays.fill(row, -1);
+        int[] tuple = decode(combo, code);
+        for (int i = 0; i < combo.length; i++)
+            row[combo[i]] = tuple[i];
+        for (int p : combo) {
+            Condition condition = conditions.get(p);
+            if (condition != null && row[condition.parameter()] < 0)
+                row[condition.parameter()] = firstActivating(condition);
+        }
+        return row;
+    }
+
+    private int firstActivating(Condition condition) {
+        List<String> conditionValues = values.get(condition.parameter());
+        for (int v = 0; v < conditionValues.size(); v++) {
+            if (condition.activating().contains(conditionValues.get(v)))
+                return v;
+        }
+        throw new IllegalArgumentException("No value of " + names.get(condition.parameter()) + " activates a parameter");
+    }
+
+    private int bestValue(int p, int[] row, List<int[]> combos, List<TreeSet<Integer>> uncovered, int[] usage) {
+        int best = 0;
+        int bestGain = -1;
+        for (int v = 0; v < values.get(p).size(); v++) {
+            row[p] = v;
+            int gain = 0;
+            for (int c = 0; c < combos.size(); c++) {
+                int[] combo = combos.get(c);
+                if (contains(combo, p) && covers(row, combo) && uncovered.get(c).contains(code(row, combo)))
+                    gain++;
+            }
+            if (gain > bestGain || gain == bestGain && usage[v] < usage[best]) {
+                best = v;
+                bestGain = gain;
+            }
+        }
+        row[p] = -1;
+        return best;
+    }
+
+    // the row has every parameter of the combination assigned and active
+    private boolean covers(int[] row, int[] combo) {
+        for (int p : combo) {
+            if (row[p] < 0)
+                return false;
+            Condition condition = conditions.get(p);
+            if (condition != null && (row[condition.parameter()] < 0
+                    || !condition.activating().contains(values.get(condition.parameter()).get(row[condition.parameter()]))))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Codes of the value combinations of the parameters a row set has to cover: all of them,
+     * less those pairing a conditional parameter with a condition value that deactivates it.
+     */
+    private TreeSet<Integer> required(int[] combo) {
+        TreeSet<Integer> codes = new TreeSet<>();
+        int total = 1;
+        for (int p : combo)
+            total *= values.get(p).size();
+        for (int code = 0; code < total; code++) {
+            int[] tuple = decode(combo, code);
+            boolean feasible = true;
+            for (int i = 0; i < combo.length && feasible; i++) {
+                Condition condition = conditions.get(combo[i]);
+                if (condition == null)
+                    continue;
+                for (int j = 0; j < combo.length; j++) {
+                    if (combo[j] == condition.parameter()
+                            && !condition.activating().contains(values.get(combo[j]).get(tuple[j])))
+                        feasible = false;
+                }
+            }
+            if (feasible)
+                codes.add(code);
+        }
+        return codes;
+    }
+
+    private Coverage coverage(List<int[]> rows, int k) {
+        long combinations = 0;
+        long covered = 0;
+        for (int[] combo : parameterCombinations(k)) {
+            TreeSet<Integer> codes = required(combo);
+            int required = codes.size();
+            for (int[] row : rows) {
+                if (covers(row, combo))
+                    codes.remove(code(row, combo));
+            }
+            combinations += required;
+            covered += required - codes.size();
+        }
+        return new Coverage(k, combinations, covered);
+    }
+
+    private List<int[]> parameterCombinations(int k) {
+        List<int[]> combos = new ArrayList<>();
+        addCombinations(new int[k], 0, 0, combos);
+        return combos;
+    }
+
+    private void addCombinations(int[] combo, int position, int from, List<int[]> combos) {
+        if (position == combo.length) {
+            combos.add(combo.clone());
+            return;
+        }
+        for (int p = from; p < names.size(); p++) {
+            combo[position] = p;
+            addCombinations(combo, position + 1, p + 1, combos);
+        }
+    }
+
+    // mixed-radix number of the row's values for the combination's parameters
+    private int code(int[] row, int[] combo) {
+        int code = 0;
+        for (int p : combo)
+            code = code * values.get(p).size() + row[p];
+        return code;
+    }
+
+    private int[] decode(int[] combo, int code) {
+        int[] tuple = new int[combo.length];
+        for (int i = combo.length - 1; i >= 0; i--) {
+            int radix = values.get(combo[i]).size();
+            tuple[i] = code % radix;
+            code /= radix;
+        }
+        return tuple;
+    }
+
+    private static boolean contains(int[] combo, int p) {
+        for (int q : combo) {
+            if (q == p)
+                return true;
+        }
+        return false;
+    }
+
+    private Map<String, String> named(int[] row) {
+        Map<String, String> named = new LinkedHashMap<>();
+        for (int p = 0; p < names.size(); p++)
+            named.put(names.get(p), values.get(p).get(row[p]));
+        return named;
+    }
+
+    private List<Map<String, String>> invalidRows(List<Map<String, String>> rows) {
+        List<Map<String, String>> invalid = new ArrayList<>();
+        if (rows.isEmpty())
+            return invalid;
+        invalidValues.forEach((name, parameterValues) -> {
+            for (String value : parameterValues) {
+                Map<String, String> row = new LinkedHashMap<>(rows.get(invalid.size() % rows.size()));
+                row.put(name, value);
+                invalid.add(row);
+            }
+        });
+        return invalid;
+    }
+
+    /**
+     * Distinct rows of the full cross product, counting a conditional parameter's values
+     * once where it is inactive.
+     */
+    private long exhaustiveRows() {
+        long rows = 1;
+        for (int p = 0; p < names.size(); p++) {
+            if (conditions.containsKey(p))
+                continue;
+            long factor = 0;
+            for (String value : values.get(p)) {
+                long combined = 1;
+                for (Map.Entry<Integer, Condition> dependent : conditions.entrySet()) {
+                    if (dependent.getValue().parameter() == p && dependent.getValue().activating().contains(value))
+                        combined *= values.get(dependent.getKey()).size();
+                }
+                factor += combined;
+            }
+            rows *= factor;
+        }
+        return rows;
+    }
+}
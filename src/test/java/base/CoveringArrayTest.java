@@ -0,0 +1,157 @@
+package base;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CoveringArray: every t-way combination of active values turns up in some row, the same
+ * model always gives the same rows, and invalid values only appear in single-fault rows.
+ */
+public class CoveringArrayTest {
+
+    private static final Map<String, List<String>> PARAMETERS = new LinkedHashMap<>();
+    private static final List<String> INVALID_AGES = List.of("17", "81");
+    private static final Set<String> KATCH = Set.of("katch");
+
+    static {
+        PARAMETERS.put("level", List.of("low", "light", "mid", "high"));
+        PARAMETERS.put("age", List.of("18", "45", "80"));
+        PARAMETERS.put("formula", List.of("mifflin", "harris", "katch"));
+        PARAMETERS.put("bodyFat", List.of("5", "20", "45"));
+        PARAMETERS.put("units", List.of("metric", "us"));
+        PARAMETERS.put("gender", List.of("male", "female"));
+    }
+
+    // bodyFat only counts with katch, as in CarbInputSpace
+    private static CoveringArray.Result generate(int strength, int maxRows) {
+        CoveringArray array = new CoveringArray(strength);
+        PARAMETERS.forEach(array::parameter);
+        return array.invalidValues("age", INVALID_AGES)
+                .activeWhen("bodyFat", "formula", KATCH)
+                .generate(maxRows);
+    }
+
+    private static boolean active(Map<String, String> row, String name) {
+        return !name.equals("bodyFat") || KATCH.contains(row.get("formula"));
+    }
+
+    /**
+     * Checks every combination of values of every t parameters against the rows, independently
+     * of how CoveringArray counts them: a combination setting bodyFat with another formula than
+     * katch cannot occur, any other has to be in a row where all its parameters are active.
+     */
+    private static void assertCovers(List<Map<String, String>> rows, int strength) {
+        List<String> names = List.copyOf(PARAMETERS.keySet());
+        List<List<String>> subsets = new ArrayList<>();
+        subsets(names, 0, strength, new ArrayList<>(), subsets);
+        int combinations = 0;
+        for (List<String> subset : subsets) {
+            for (Map<String, String> combination : combinations(subset, 0, new LinkedHashMap<>())) {
+                if (combination.containsKey("bodyFat") && combination.containsKey("formula")
+                        && !active(combination, "bodyFat"))
+                    continue;
+                combinations++;
+                boolean covered = rows.stream().anyMatch(row -> combination.entrySet().stream().allMatch(
+                        value -> value.getValue().equals(row.get(value.getKey())) && active(row, value.getKey())));
+                Assert.assertTrue(covered, strength + "-way combination " + combination + " is in no row");
+            }
+        }
+        Assert.assertTrue(combinations > 0);
+    }
+
+    private static void subsets(List<String> names, int from, int size, List<String> subset, List<List<String>> subsets) {
+        if (subset.size() == size) {
+            subsets.add(List.copyOf(subset));
+            return;
+        }
+        for (int i = from; i < names.size(); i++) {
+            subset.add(names.get(i));
+            subsets(names, i + 1, size, subset, subsets);
+            subset.remove(subset.size() - 1);
+        }
+    }
+
+    private static List<Map<String, String>> combinations(List<String> subset, int index, Map<String, String> partial) {
+        if (index == subset.size())
+            return List.of(new LinkedHashMap<>(partial));
+        List<Map<String, String>> combinations = new ArrayList<>();
+        String name = subset.get(index);
+        for (String value : PARAMETERS.get(name)) {
+            partial.put(name, value);
+            combinations.addAll(combinations(subset, index + 1, partial));
+        }
+        partial.remove(name);
+        return combinations;
+    }
+
+    @Test
+    public void coversEveryPairOfActiveValues() {
+        CoveringArray.Result result = generate(2, 0);
+        assertCovers(result.rows(), 2);
+        Assert.assertEquals(result.strongest().covered(), result.strongest().combinations());
+        Assert.assertEquals(result.rowsFor(100), result.rows().size());
+        Assert.assertTrue(result.rows().size() < result.exhaustiveRows(),
+                result.rows().size() + " rows, " + result.exhaustiveRows() + " exhaustive");
+    }
+
+    @Test
+    public void coversEveryTripleOfActiveValues() {
+        CoveringArray.Result result = generate(3, 0);
+        assertCovers(result.rows(), 3);
+        assertCovers(result.rows(), 2);
+        Assert.assertEquals(result.strongest().covered(), result.strongest().combinations());
+        for (CoveringArray.Coverage level : result.coverage())
+            Assert.assertEquals(level.percent(), 100.0, level.toString());
+    }
+
+    @Test
+    public void sameModelGivesSameRows() {
+        for (int strength = 2; strength <= 3; strength++) {
+            CoveringArray.Result first = generate(strength, 0);
+            CoveringArray.Result second = generate(strength, 0);
+            Assert.assertEquals(second.rows(), first.rows());
+            Assert.assertEquals(second.invalidRows(), first.invalidRows());
+            Assert.assertEquals(second.toReport(), first.toReport());
+
+            // a row limit cuts the same rows short rather than choosing others
+            CoveringArray.Result limited = generate(strength, 5);
+            Assert.assertEquals(limited.rows(), first.rows().subList(0, 5));
+        }
+        Assert.assertEquals(CarbInputSpace.generate(2, 0).rows(), CarbInputSpace.generate(2, 0).rows());
+    }
+
+    @Test
+    public void invalidValuesOnlyInSingleFaultRows() {
+        for (int strength = 2; strength <= 3; strength++) {
+            CoveringArray.Result result = generate(strength, 0);
+            for (Map<String, String> row : result.rows())
+                Assert.assertFalse(INVALID_AGES.contains(row.get("age")), "covering row " + row);
+
+            List<String> faults = new ArrayList<>();
+            for (Map<String, String> row : result.invalidRows()) {
+                Assert.assertEquals(List.copyOf(row.keySet()), List.copyOf(PARAMETERS.keySet()));
+                int invalid = 0;
+                for (Map.Entry<String, String> value : row.entrySet()) {
+                    if (PARAMETERS.get(value.getKey()).contains(value.getValue()))
+                        continue;
+                    invalid++;
+                    Assert.assertEquals(value.getKey(), "age", "row " + row);
+                    faults.add(value.getValue());
+                }
+                Assert.assertEquals(invalid, 1, "row " + row);
+            }
+            Assert.assertEquals(faults, INVALID_AGES, "one row per invalid value");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rejectsInvalidValuesOfAnUnknownParameter() {
+        new CoveringArray(2).parameter("age", List.of("18")).invalidValues("weight", List.of("0"));
+    }
+}
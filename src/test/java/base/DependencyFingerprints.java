@@ -0,0 +1,399 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.support.pagefactory.Annotations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Current fingerprint of a recorded test dependency, as short SHA-256 hex:
+ * <ul>
+ *   <li>{@code data:<file>#<tc>}: every row of the test data file with that tc</li>
+ *   <li>{@code method:<class>#<method>}: the source text of the method (all overloads) and
+ *   of the static fields of its file it reads, directly or through other such fields (the
+ *   XPaths and scripts of a page object), comments and formatting ignored</li>
+ *   <li>{@code source:<class>}: the whole source file of the class (the reference engine and
+ *   the result parsing an assertion runs through), comments and formatting ignored</li>
+ *   <li>{@code locator:<class>#<field>}: the By the field's @FindBy annotations build</li>
+ *   <li>{@code config:<setting>}: the current value of a target setting (ChangeAwareSelector#target),
+ *   so a run against another site or browser does not count as unchanged</li>
+ * </ul>
+ * A dependency that no longer exists gets {@link #MISSING}, which never matches a recorded value.
+ */
+final class DependencyFingerprints {
+
+    private final static Logger logger = LogManager.getLogger(DependencyFingerprints.class);
+
+    static final String MISSING = "missing";
+
+    private final List<Path> sourceRoots;
+    private final Map<String, String> settings;
+    private final Map<String, String> fingerprints = new HashMap<>();
+    private final Map<Path, Map<String, String>> dataFiles = new HashMap<>();
+    private final Map<Path, String> sourceFiles = new HashMap<>();
+
+    DependencyFingerprints(List<Path> sourceRoots, Map<String, String> settings) {
+        this.sourceRoots = sourceRoots;
+        this.settings = Map.copyOf(settings);
+    }
+
+    synchronized String of(String dependency) {
+        return fingerprints.computeIfAbsent(dependency, this::compute);
+    }
+
+    private String compute(String dependency) {
+        if (dependency.startsWith("source:"))
+            return classSource(dependency.substring("source:".length()));
+        if (dependency.startsWith("config:")) {
+            String value = settings.get(dependency.substring("config:".length()));
+            return value == null ? MISSING : fingerprint(value);
+        }
+        int colon = dependency.indexOf(':');
+        int hash = dependency.lastIndexOf('#');
+        if (colon < 0 || hash < colon)
+            return MISSING;
+        String owner = dependency.substring(colon + 1, hash);
+        String name = dependency.substring(hash + 1);
+        try {
+            return switch (dependency.substring(0, colon)) {
+                case "data" -> dataRows(Path.of(owner)).getOrDefault(name.toLowerCase(Locale.ROOT), MISSING);
+                case "method" -> methodSource(owner, name);
+                case "locator" -> locator(owner, name);
+                default -> MISSING;
+            };
+        } catch (UncheckedIOException | ReflectiveOperationException | LinkageError e) {
+            logger.debug("No fingerprint for {}: {}", dependency, e.getMessage());
+            return MISSING;
+        }
+    }
+
+    /**
+     * Fingerprint per tc (lower case) of all rows of a {@code tc=<test>,name=value,...} file.
+     */
+    private Map<String, String> dataRows(Path file) {
+        return dataFiles.computeIfAbsent(file, path -> {
+            Map<String, MessageDigest> digests = new LinkedHashMap<>();
+            Map<String, String> fields = new HashMap<>();
+            try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+                lines.map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .forEach(line -> {
+                            fields.clear();
+                            if (TestDataStore.parseLine(line, fields) != null || fields.get("tc") == null)
+                                return;
+                            digests.computeIfAbsent(fields.get("tc").toLowerCase(Locale.ROOT), tc -> sha256())
+                                    .update((line + "\n").getBytes(StandardCharsets.UTF_8));
+                        });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Map<String, String> rows = new HashMap<>();
+            digests.forEach((tc, digest) -> rows.put(tc, hex(digest.digest())));
+            return rows;
+        });
+    }
+
+    private String methodSource(String className, String method) {
+        String source = sourceOf(className);
+        if (source == null)
+            return MISSING;
+        List<String> declarations = JavaSource.declarations(source, method);
+        if (declarations.isEmpty())
+            return MISSING;
+        List<String> parts = new ArrayList<>(declarations);
+        parts.addAll(JavaSource.referencedStaticFields(source, declarations));
+        return fingerprint(String.join("\n", parts));
+    }
+
+    private String classSource(String className) {
+        String source = sourceOf(className);
+        return source == null ? MISSING : fingerprint(JavaSource.code(source));
+    }
+
+    // the text of the file declaring the class (or the class it is nested in), null when there is none
+    private String sourceOf(String className) {
+        int nested = className.indexOf('$');
+        String file = (nested < 0 ? className : className.substring(0, nested)).replace('.', '/') + ".java";
+        for (Path root : sourceRoots) {
+            Path path = root.resolve(file);
+            if (Files.isRegularFile(path))
+                return sourceFiles.computeIfAbsent(path, DependencyFingerprints::read);
+        }
+        return null;
+    }
+
+    private static String locator(String className, String field) throws ReflectiveOperationException {
+        Class<?> type = Class.forName(className, false, DependencyFingerprints.class.getClassLoader());
+        return fingerprint(new Annotations(type.getDeclaredField(field)).buildBy().toString());
+    }
+
+    static String fingerprint(String text) {
+        return hex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String read(Path path) {
+        try {
+            return Files.readString(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest, 0, 8);
+    }
+
+    /**
+     * Just enough Java lexing to cut method and static field declarations out of a source
+     * file: comments are dropped, and braces, parentheses and semicolons inside string, text
+     * block and char literals are not counted.
+     */
+    static final class JavaSource {
+
+        private static final Pattern IDENTIFIER = Pattern.compile("[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*");
+
+        private JavaSource() {
+        }
+
+        /**
+         * Every declaration (name through closing brace) of a method or constructor with the
+         * name, comments removed and whitespace collapsed.
+         */
+        static List<String> declarations(String source, String name) {
+            StringBuilder code = new StringBuilder(source.length());
+            StringBuilder lexed = new StringBuilder(source.length());
+            lex(source, code, lexed);
+            String structure = lexed.toString();
+
+            List<String> found = new ArrayList<>();
+            int from = 0;
+            while ((from = structure.indexOf(name, from)) >= 0) {
+                int start = from;
+                from += name.length();
+                if (!isWordAt(structure, start, name.length()) || isQualifiedOrNew(structure, start))
+                    continue;
+                int open = skipSpace(structure, from);
+                if (open >= structure.length() || structure.charAt(open) != '(')
+                    continue;
+                int close = matching(structure, open, '(', ')');
+                if (close < 0)
+                    continue;
+                int body = skipSpace(structure, close + 1);
+                if (structure.startsWith("throws", body)) {
+                    while (body < structure.length() && "{;".indexOf(structure.charAt(body)) < 0)
+                        body++;
+                }
+                if (body >= structure.length() || structure.charAt(body) != '{')
+                    continue;
+                int end = matching(structure, body, '{', '}');
+                if (end < 0)
+                    continue;
+                found.add(code.substring(start, end + 1).replaceAll("\\s+", " "));
+                from = end + 1;
+            }
+            return found;
+        }
+
+        /**
+         * The whole source, comments removed and whitespace collapsed.
+         */
+        static String code(String source) {
+            StringBuilder code = new StringBuilder(source.length());
+            lex(source, code, new StringBuilder(source.length()));
+            return code.toString().replaceAll("\\s+", " ").trim();
+        }
+
+        /**
+         * Declarations of the static fields the given declarations refer to by name, and of
+         * the static fields those refer to, in source order.
+         */
+        static List<String> referencedStaticFields(String source, List<String> declarations) {
+            Map<String, String> fields = staticFields(source);
+            Set<String> referenced = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>(declarations);
+            while (!pending.isEmpty()) {
+                Matcher identifiers = IDENTIFIER.matcher(pending.pop());
+                while (identifiers.find()) {
+                    String name = identifiers.group();
+                    if (fields.containsKey(name) && referenced.add(name))
+                        pending.push(fields.get(name));
+                }
+            }
+            List<String> found = new ArrayList<>();
+            fields.forEach((name, declaration) -> {
+                if (referenced.contains(name))
+                    found.add(declaration);
+            });
+            return found;
+        }
+
+        /**
+         * Static field name to its declaration (modifiers through semicolon, comments removed
+         * and whitespace collapsed), in source order. Only the first variable of a
+         * multi-variable declaration is named.
+         */
+        static Map<String, String> staticFields(String source) {
+            StringBuilder code = new StringBuilder(source.length());
+            StringBuilder lexed = new StringBuilder(source.length());
+            lex(source, code, lexed);
+            String structure = lexed.toString();
+
+            Map<String, String> fields = new LinkedHashMap<>();
+            int from = 0;
+            while ((from = structure.indexOf("static", from)) >= 0) {
+                int start = from;
+                from += "static".length();
+                if (!isWordAt(structure, start, "static".length()) || isStaticImport(structure, start))
+                    continue;
+                // a field's name is followed by = or ;, a method's by (, a nested type's or initializer's by {
+                int end = from;
+                while (end < structure.length() && "=;({".indexOf(structure.charAt(end)) < 0)
+                    end++;
+                if (end >= structure.length() || structure.charAt(end) == '(' || structure.charAt(end) == '{')
+                    continue;
+                int nameEnd = end;
+                while (nameEnd > from && Character.isWhitespace(structure.charAt(nameEnd - 1)))
+                    nameEnd--;
+                int nameStart = nameEnd;
+                while (nameStart > from && Character.isJavaIdentifierPart(structure.charAt(nameStart - 1)))
+                    nameStart--;
+                int semicolon = statementEnd(structure, end);
+                if (nameStart == nameEnd || semicolon < 0)
+                    continue;
+                fields.putIfAbsent(structure.substring(nameStart, nameEnd),
+                        code.substring(start, semicolon + 1).replaceAll("\\s+", " "));
+                from = semicolon + 1;
+            }
+            return fields;
+        }
+
+        private static boolean isStaticImport(CharSequence text, int start) {
+            int before = start - 1;
+            while (before >= 0 && Character.isWhitespace(text.charAt(before)))
+                before--;
+            return before >= 5 && text.subSequence(before - 5, before + 1).toString().equals("import");
+        }
+
+        // the semicolon ending the statement at i, outside any brackets (array initializers, lambdas)
+        private static int statementEnd(CharSequence text, int i) {
+            int depth = 0;
+            for (; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if ("({[".indexOf(c) >= 0) {
+                    depth++;
+                } else if (")}]".indexOf(c) >= 0) {
+                    depth--;
+                } else if (c == ';' && depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // code: comments blanked; structure: additionally literal contents blanked
+        private static void lex(String source, StringBuilder code, StringBuilder structure) {
+            int i = 0;
+            int length = source.length();
+            while (i < length) {
+                char c = source.charAt(i);
+                if (source.startsWith("//", i)) {
+                    while (i < length && source.charAt(i) != '\n') {
+                        code.append(' ');
+                        structure.append(' ');
+                        i++;
+                    }
+                } else if (source.startsWith("/*", i)) {
+                    int end = source.indexOf("*/", i + 2);
+                    end = end < 0 ? length : end + 2;
+                    for (; i < end; i++) {
+                        code.append(' ');
+                        structure.append(' ');
+                    }
+                } else if (source.startsWith("\"\"\"", i) || c == '"' || c == '\'') {
+                    String quote = source.startsWith("\"\"\"", i) ? "\"\"\"" : String.valueOf(c);
+                    int end = i + quote.length();
+                    while (end < length && !source.startsWith(quote, end))
+                        end += source.charAt(end) == '\\' ? 2 : 1;
+                    end = Math.min(length, end + quote.length());
+                    code.append(source, i, end);
+                    structure.append(quote);
+                    for (int k = i + quote.length(); k < end - quote.length(); k++)
+                        structure.append(' ');
+                    structure.append(source, Math.max(i + quote.length(), end - quote.length()), end);
+                    i = end;
+                } else {
+                    code.append(c);
+                    structure.append(c);
+                    i++;
+                }
+            }
+        }
+
+        private static boolean isWordAt(CharSequence text, int start, int length) {
+            int end = start + length;
+            return (start == 0 || !Character.isJavaIdentifierPart(text.charAt(start - 1)))
+                    && (end >= text.length() || !Character.isJavaIdentifierPart(text.charAt(end)));
+        }
+
+        // calls on another object (x.name(...)) and anonymous classes (new Name(...) {...}) are not declarations
+        private static boolean isQualifiedOrNew(CharSequence text, int start) {
+            int before = start - 1;
+            while (before >= 0 && Character.isWhitespace(text.charAt(before)))
+                before--;
+            if (before < 0)
+                return false;
+            if (text.charAt(before) == '.')
+                return true;
+            return before >= 2 && text.subSequence(before - 2, before + 1).toString().equals("new")
+                    && (before < 3 || !Character.isJavaIdentifierPart(text.charAt(before - 3)));
+        }
+
+        private static int skipSpace(CharSequence text, int i) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i)))
+                i++;
+            return i;
+        }
+
+        private static int matching(CharSequence text, int open, char opening, char closing) {
+            int depth = 0;
+            for (int i = open; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == opening) {
+                    depth++;
+                } else if (c == closing && --depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package base;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The JavaSource lexer behind the method fingerprints of change-aware selection, and the
+ * method fingerprints built on it.
+ */
+public class DependencyFingerprintsTest {
+
+    private static final String PAGE = """
+            package pages;
+
+            import static java.util.Objects.requireNonNull;
+
+            public class Page {
+                // the header, "}" and { in a comment do not count
+                private static final String HDR_XPATH = "//h1[text()='}']";
+                private static final String ROOT = "#main";
+                private static final String SCRIPT = ROOT + \"""
+                        ; if (x) { return '{'; }
+                        \""";
+                private static final String[] UNUSED = {"a;", "b"};
+                private static final Runnable HOOK = () -> { ready(); };
+
+                /* waitForHeader() { is not a declaration */
+                public void waitForHeader() {
+                    await(HDR_XPATH, '}');
+                }
+
+                public void waitForHeader(int seconds) throws IllegalStateException {
+                    await(HDR_XPATH, seconds);
+                }
+
+                public Object run() {
+                    other.waitForHeader();
+                    return execute(SCRIPT);
+                }
+
+                private static void ready() {
+                }
+
+                private static final class Holder {
+                }
+            }
+            """;
+
+    @Test
+    public void findsEveryOverloadButNoCallsOrComments() {
+        List<String> declarations = DependencyFingerprints.JavaSource.declarations(PAGE, "waitForHeader");
+        Assert.assertEquals(declarations, List.of(
+                "waitForHeader() { await(HDR_XPATH, '}'); }",
+                "waitForHeader(int seconds) throws IllegalStateException { await(HDR_XPATH, seconds); }"));
+    }
+
+    @Test
+    public void ignoresBracesInLiterals() {
+        List<String> declarations = DependencyFingerprints.JavaSource.declarations(PAGE, "run");
+        Assert.assertEquals(declarations, List.of("run() { other.waitForHeader(); return execute(SCRIPT); }"));
+    }
+
+    @Test
+    public void ignoresCommentsAndFormatting() {
+        String reformatted = PAGE
+                .replace("public void waitForHeader() {\n", "public void waitForHeader()   // still the same\n    {\n")
+                .replace("await(HDR_XPATH, '}');", "await(  HDR_XPATH, /* header */ '}'  );");
+        Assert.assertEquals(DependencyFingerprints.JavaSource.declarations(reformatted, "waitForHeader").get(0)
+                        .replaceAll("\\s+", ""),
+                DependencyFingerprints.JavaSource.declarations(PAGE, "waitForHeader").get(0).replaceAll("\\s+", ""));
+    }
+
+    @Test
+    public void findsStaticFieldsOnly() {
+        Map<String, String> fields = DependencyFingerprints.JavaSource.staticFields(PAGE);
+        Assert.assertEquals(List.copyOf(fields.keySet()), List.of("HDR_XPATH", "ROOT", "SCRIPT", "UNUSED", "HOOK"));
+        Assert.assertEquals(fields.get("HDR_XPATH"), "static final String HDR_XPATH = \"//h1[text()='}']\";");
+        Assert.assertEquals(fields.get("UNUSED"), "static final String[] UNUSED = {\"a;\", \"b\"};");
+        Assert.assertEquals(fields.get("HOOK"), "static final Runnable HOOK = () -> { ready(); };");
+    }
+
+    @Test
+    public void followsStaticFieldsTransitively() {
+        List<String> run = DependencyFingerprints.JavaSource.declarations(PAGE, "run");
+        List<String> fields = DependencyFingerprints.JavaSource.referencedStaticFields(PAGE, run);
+        Assert.assertEquals(fields.size(), 2, "SCRIPT and the ROOT it is built from: " + fields);
+        Assert.assertTrue(fields.get(0).contains("ROOT = \"#main\""), fields.toString());
+        Assert.assertTrue(fields.get(1).contains("SCRIPT = ROOT"), fields.toString());
+    }
+
+    @Test
+    public void methodFingerprintFollowsTheConstantsItReads() throws IOException {
+        Path root = Files.createTempDirectory("fingerprints");
+        try {
+            Path file = root.resolve("pages/Page.java");
+            Files.createDirectories(file.getParent());
+
+            Files.writeString(file, PAGE, StandardCharsets.UTF_8);
+            String header = new DependencyFingerprints(List.of(root), Map.of()).of("method:pages.Page#waitForHeader");
+            String run = new DependencyFingerprints(List.of(root), Map.of()).of("method:pages.Page#run");
+
+            Files.writeString(file, PAGE.replace("#main", "#content"), StandardCharsets.UTF_8);
+            DependencyFingerprints changed = new DependencyFingerprints(List.of(root), Map.of());
+            Assert.assertEquals(changed.of("method:pages.Page#waitForHeader"), header, "ROOT is not read by waitForHeader");
+            Assert.assertNotEquals(changed.of("method:pages.Page#run"), run, "run reads ROOT through SCRIPT");
+            Assert.assertEquals(changed.of("method:pages.Page#gone"), DependencyFingerprints.MISSING);
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package base;
+
+import Common.BasePage;
+import Common.DependencyTrace;
+import Common.TimeoutManager;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.ChromiumOptions;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds browser sessions for the configured browser and launch profile, and keeps
+ * launch time and time-to-first-navigation figures per profile.
+ */
+public class DriverFactory {
+
+    private final static Logger logger = LogManager.getLogger(DriverFactory.class);
+
+    // wait site of the navigations made here, for the latency history and its drift report
+    private static final String PAGE_LOAD_SITE = "DriverFactory|pageLoad|navigate";
+
+    private final String browser;
+    private final BrowserProfile profile;
+    private final Duration pageLoadTimeout;
+    private final Duration scriptTimeout;
+    private final boolean countCommands;
+    private final CommandStats commandStats = new CommandStats();
+
+    // page-object and test methods on the stack of every driver call, for change-aware test selection
+    private static final WebDriverListener DEPENDENCY_TRACER = new WebDriverListener() {
+        @Override
+        public void beforeAnyCall(Object target, Method method, Object[] args) {
+            DependencyTrace.recordMethods(type -> BasePage.class.isAssignableFrom(type)
+                    || BaseTest.class.isAssignableFrom(type));
+        }
+    };
+
+    private final Set<WebDriver> awaitingFirstNavigation = ConcurrentHashMap.newKeySet();
+    private final Map<WebDriver, RequestBlocker> requestBlockers = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile RequestBlockingRules blockingRules;
+    private final Timing launchTiming = new Timing();
+    private final Timing firstNavigationTiming = new Timing();
+
+    public DriverFactory(TestConfig config) {
+        this(config, BrowserProfile.from(config));
+    }
+
+    public DriverFactory(TestConfig config, BrowserProfile profile) {
+        this.browser = config.getBrowser().toLowerCase();
+        this.profile = profile;
+        this.pageLoadTimeout = Duration.ofSeconds(config.getPageLoadTimeout());
+        this.scriptTimeout = Duration.ofSeconds(config.getInt("test.scriptTimeout", 30));
+        this.countCommands = config.getBoolean("test.commandStats", true);
+    }
+
+    public WebDriver createDriver() {
+        long start = System.nanoTime();
+        WebDriver driver = switch (browser) {
+            case "chrome" -> new ChromeDriver(chromiumOptions(new ChromeOptions()));
+            case "edge" -> new EdgeDriver(chromiumOptions(new EdgeOptions()));
+            case "firefox" -> new FirefoxDriver(firefoxOptions());
+            default -> throw new IllegalArgumentException("Unsupported browser: " + browser);
+        };
+
+        if (profile.hasFixedViewport()) {
+            driver.manage().window().setSize(new Dimension(profile.windowWidth(), profile.windowHeight()));
+        } else if (!profile.headless()) {
+            driver.manage().window().maximize();
+        }
+        // page objects only use explicit and in-page waits, never the implicit wait
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        // the session timeout covers every load (form submits and tab links too), but only navigate() is
+        // measured, so it stays as configured rather than learned
+        driver.manage().timeouts().pageLoadTimeout(pageLoadTimeout);
+        // upper bound for BasePage's in-page (async script) waits
+        driver.manage().timeouts().scriptTimeout(scriptTimeout);
+
+        // interception is installed on the driver itself, not on the command-counting decorator
+        RequestBlocker requestBlocker = blockingRules == null ? null : RequestBlocker.install(driver, blockingRules);
+
+        List<WebDriverListener> listeners = new ArrayList<>();
+        // every call through the decorated driver (and the elements it returns) is counted per test
+        if (countCommands)
+            listeners.add(commandStats);
+        if (DependencyTrace.isEnabled())
+            listeners.add(DEPENDENCY_TRACER);
+        if (!listeners.isEmpty())
+            driver = new EventFiringDecorator<>(listeners.toArray(new WebDriverListener[0])).decorate(driver);
+
+        long launchMillis = launchTiming.record(start);
+        awaitingFirstNavigation.add(driver);
+        if (requestBlocker != null)
+            requestBlockers.put(driver, requestBlocker);
+        logger.info("Launched {} with profile '{}' in {} ms", browser, profile.name(), launchMillis);
+        return driver;
+    }
+
+    /**
+     * Fails requests the rules block in every browser launched from now on; pass null to stop.
+     */
+    public void blockRequests(RequestBlockingRules rules) {
+        this.blockingRules = rules;
+    }
+
+    /**
+     * Request blocker of a driver launched with blocking on, for its per-navigation counts; null otherwise.
+     */
+    public RequestBlocker getRequestBlocker(WebDriver driver) {
+        return requestBlockers.get(driver);
+    }
+
+    /**
+     * Quits a session, first closing its request blocker so the counts of its last navigation are logged.
+     */
+    public void quit(WebDriver driver) {
+        RequestBlocker requestBlocker = requestBlockers.remove(driver);
+        try {
+            if (requestBlocker != null)
+                requestBlocker.close();
+        } finally {
+            driver.quit();
+        }
+    }
+
+    /**
+     * Navigates the driver and records the duration if this is the session's first page load.
+     */
+    public void navigate(WebDriver driver, String url) {
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            driver.navigate().to(url);
+            completed = true;
+        } finally {
+            TimeoutManager.record(PAGE_LOAD_SITE, System.nanoTime() - start, completed);
+        }
+        if (awaitingFirstNavigation.remove(driver)) {
+            long navigationMillis = firstNavigationTiming.record(start);
+            logger.info("First navigation with profile '{}' took {} ms", profile.name(), navigationMillis);
+        }
+    }
+
+    public BrowserProfile getProfile() {
+        return profile;
+    }
+
+    public void logSummary() {
+        logger.printf(Level.INFO, "Launch profile '%s' (%s): launches=%d avg=%d ms max=%d ms, first navigation avg=%d ms max=%d ms",
+                profile.name(), browser,
+                launchTiming.count(), launchTiming.averageMillis(), launchTiming.maxMillis(),
+                firstNavigationTiming.averageMillis(), firstNavigationTiming.maxMillis());
+    }
+
+    private <T extends ChromiumOptions<T>> T chromiumOptions(T options) {
+        options.setPageLoadStrategy(profile.pageLoadStrategy());
+        if (profile.headless())
+            options.addArguments("--headless=new");
+        if (profile.hasFixedViewport())
+            options.addArguments("--window-size=" + profile.windowWidth() + "," + profile.windowHeight());
+        if (profile.disableImages())
+            options.setExperimentalOption("prefs", Map.of("profile.managed_default_content_settings.images", 2));
+        if (profile.disableExtensions())
+            options.addArguments("--disable-extensions");
+        if (profile.disableGpu())
+            options.addArguments("--disable-gpu");
+        if (profile.disableBackgroundNetworking())
+            options.addArguments("--disable-background-networking", "--disable-component-update",
+                    "--disable-default-apps", "--no-first-run");
+        return options;
+    }
+
+    private FirefoxOptions firefoxOptions() {
+        FirefoxOptions options = new FirefoxOptions();
+        options.setPageLoadStrategy(profile.pageLoadStrategy());
+        // Firefox intercepts requests only over BiDi
+        if (blockingRules != null)
+            options.enableBiDi();
+        if (profile.headless())
+            options.addArguments("-headless");
+        if (profile.hasFixedViewport())
+            options.addArguments("--width=" + profile.windowWidth(), "--height=" + profile.windowHeight());
+        if (profile.disableImages())
+            options.addPreference("permissions.default.image", 2);
+        if (profile.disableExtensions())
+            options.addPreference("extensions.enabledScopes", 0);
+        if (profile.disableGpu()) {
+            options.addPreference("layers.acceleration.disabled", true);
+            options.addPreference("gfx.webrender.software", true);
+        }
+        if (profile.disableBackgroundNetworking()) {
+            options.addPreference("network.prefetch-next", false);
+            options.addPreference("network.dns.disablePrefetch", true);
+            options.addPreference("app.update.auto", false);
+            options.addPreference("browser.safebrowsing.update.enabled", false);
+            options.addPreference("datareporting.policy.dataSubmissionEnabled", false);
+        }
+        return options;
+    }
+
+    private static final class Timing {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        long record(long startNanos) {
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            count.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+            return millis;
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        long averageMillis() {
+            long n = count.get();
+            return n == 0 ? 0 : totalMillis.get() / n;
+        }
+
+        long maxMillis() {
+            return maxMillis.get();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps up to {@code size} warm browser sessions and leases them to tests.
+ * A leased driver is reset before it is handed out again, replaced when it fails
+ * the health check and quit once it has been used {@code maxReuse} times.
+ * Sessions can be launched ahead of the first lease with {@link #prewarm}.
+ */
+public class DriverPool {
+
+    private final static Logger logger = LogManager.getLogger(DriverPool.class);
+
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "try { window.localStorage.clear(); } catch (e) {}" +
+            "try { window.sessionStorage.clear(); } catch (e) {}";
+
+    private final Supplier<WebDriver> driverFactory;
+    private final Consumer<WebDriver> quit;
+    private final int size;
+    private final int maxReuse;
+
+    // one permit per live browser session, leased or idle
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledDriver> idle = new LinkedBlockingDeque<>();
+    private final Map<WebDriver, PooledDriver> leased = new ConcurrentHashMap<>();
+    // sessions still launching in the background; a lease takes one of these before creating its own
+    private final LinkedBlockingDeque<CompletableFuture<PooledDriver>> warming = new LinkedBlockingDeque<>();
+
+    private volatile boolean closed = false;
+
+    public DriverPool(Supplier<WebDriver> driverFactory, int size, int maxReuse) {
+        this(driverFactory, WebDriver::quit, size, maxReuse);
+    }
+
+    /**
+     * @param quit ends a session the pool retires, replaces or shuts down, e.g. DriverFactory::quit
+     */
+    public DriverPool(Supplier<WebDriver> driverFactory, Consumer<WebDriver> quit, int size, int maxReuse) {
+        if (size < 1)
+            throw new IllegalArgumentException("Driver pool size must be at least 1: " + size);
+        if (maxReuse < 1)
+            throw new IllegalArgumentException("Driver pool max reuse must be at least 1: " + maxReuse);
+        this.driverFactory = driverFactory;
+        this.quit = quit;
+        this.size = size;
+        this.maxReuse = maxReuse;
+        this.permits = new Semaphore(size, true);
+    }
+
+    public WebDriver lease() {
+        if (closed)
+            throw new IllegalStateException("Driver pool is already shut down");
+        permits.acquireUninterruptibly();
+        try {
+            PooledDriver pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (reset(pooled)) {
+                    logger.info("Reusing pooled driver (use {} of {})", pooled.uses + 1, maxReuse);
+                    break;
+                }
+                logger.warn("Pooled driver failed health check, replacing it");
+                quitQuietly(pooled.driver);
+            }
+            if (pooled == null)
+                pooled = takeWarming();
+            if (pooled == null)
+                pooled = create();
+            leased.put(pooled.driver, pooled);
+            return pooled.driver;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(WebDriver driver) {
+        PooledDriver pooled = leased.remove(driver);
+        if (pooled == null) {
+            logger.warn("Driver was not leased from this pool, quitting it");
+            quitQuietly(driver);
+            return;
+        }
+        pooled.uses++;
+        if (closed || pooled.uses >= maxReuse) {
+            logger.info("Retiring driver after {} use(s)", pooled.uses);
+            quitQuietly(driver);
+        } else {
+            idle.offerLast(pooled);
+        }
+        permits.release();
+    }
+
+    /**
+     * Launches up to {@code count} sessions (capped at the pool size) in parallel on
+     * background threads and opens {@code url} in each, so browser start-up and the first
+     * page load overlap with the rest of the suite set-up. Returns immediately.
+     */
+    public void prewarm(int count, BiConsumer<WebDriver, String> navigate, String url) {
+        int sessions = Math.min(count, size);
+        for (int i = 0; i < sessions; i++) {
+            CompletableFuture<PooledDriver> launch = new CompletableFuture<>();
+            warming.offerLast(launch);
+            Thread.ofVirtual().name("driver-prewarm-" + i).start(() -> {
+                PooledDriver pooled;
+                try {
+                    pooled = create();
+                } catch (RuntimeException e) {
+                    launch.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    navigate.accept(pooled.driver, url);
+                } catch (RuntimeException e) {
+                    // the session is still usable; the test navigates again anyway
+                    logger.warn("Prewarm navigation to {} failed: {}", url, e.toString());
+                }
+                launch.complete(pooled);
+            });
+        }
+        logger.info("Prewarming {} driver session(s) in the background", sessions);
+    }
+
+    /**
+     * Quits a leased driver whose session is gone instead of returning it, freeing its place
+     * for a new session.
+     */
+    public void discard(WebDriver driver) {
+        PooledDriver pooled = leased.remove(driver);
+        quitQuietly(driver);
+        if (pooled != null)
+            permits.release();
+    }
+
+    public void shutdown() {
+        closed = true;
+        List<PooledDriver> drivers = new ArrayList<>();
+        idle.drainTo(drivers);
+        CompletableFuture<PooledDriver> launch;
+        while ((launch = warming.pollFirst()) != null) {
+            PooledDriver pooled = await(launch);
+            if (pooled != null)
+                drivers.add(pooled);
+        }
+        drivers.addAll(leased.values());
+        leased.clear();
+        drivers.forEach(pooled -> quitQuietly(pooled.driver));
+        logger.info("Driver pool shut down, {} session(s) quit", drivers.size());
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxReuse() {
+        return maxReuse;
+    }
+
+    private PooledDriver takeWarming() {
+        CompletableFuture<PooledDriver> launch;
+        while ((launch = warming.pollFirst()) != null) {
+            PooledDriver pooled = await(launch);
+            if (pooled != null)
+                return pooled;
+        }
+        return null;
+    }
+
+    private static PooledDriver await(CompletableFuture<PooledDriver> launch) {
+        try {
+            return launch.join();
+        } catch (CompletionException e) {
+            logger.warn("Prewarmed driver failed to start: {}", e.getCause().toString());
+            return null;
+        }
+    }
+
+    private PooledDriver create() {
+        WebDriver driver = driverFactory.get();
+        return new PooledDriver(driver, driver.getWindowHandle());
+    }
+
+    /**
+     * Brings a returned driver back to a blank state. Any WebDriver error here means
+     * the session is unhealthy and the caller replaces it.
+     */
+    private boolean reset(PooledDriver pooled) {
+        WebDriver driver = pooled.driver;
+        try {
+            for (String handle : driver.getWindowHandles()) {
+                if (!handle.equals(pooled.homeHandle)) {
+                    driver.switchTo().window(handle);
+                    driver.close();
+                }
+            }
+            driver.switchTo().window(pooled.homeHandle);
+            driver.switchTo().defaultContent();
+            driver.manage().deleteAllCookies();
+            ((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE_SCRIPT);
+            driver.navigate().to("about:blank");
+            return true;
+        } catch (WebDriverException e) {
+            logger.debug("Driver reset failed", e);
+            return false;
+        }
+    }
+
+    private void quitQuietly(WebDriver driver) {
+        try {
+            quit.accept(driver);
+        } catch (Exception e) {
+            logger.error("Driver failed to quit", e);
+        }
+    }
+
+    private static final class PooledDriver {
+        private final WebDriver driver;
+        private final String homeHandle;
+        private int uses;
+
+        private PooledDriver(WebDriver driver, String homeHandle) {
+            this.driver = driver;
+            this.homeHandle = homeHandle;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package base;
+
+import Oracle.ActivityLevel;
+import Oracle.BmrFormula;
+import Pages.CarbFormInput;
+import Pages.ResultTable;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Browserless execution mode: submits the carbohydrate calculator's GET form with
+ * java.net.http on virtual threads and parses the result table out of the returned
+ * HTML, with the same field names the page's form uses (cage, csex, cheightmeter, ...).
+ */
+public final class HttpCalculatorClient implements AutoCloseable {
+
+    private static final String CARB_CALCULATOR_PATH = "carbohydrate-calculator.html";
+    private static final String AGE_BOUNDARY_WARNING = "Please provide an age between 18 and 80.";
+
+    private static final String RESULT_TABLE_CLASS = "class=\"cinfoT\"";
+    private static final Pattern ROW = Pattern.compile("<tr[^>]*>(.*?)</tr>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern CELL = Pattern.compile("<td[^>]*>(.*?)</td>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern TAG = Pattern.compile("<[^>]+>");
+
+    private final String baseURL;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    public HttpCalculatorClient(String baseURL, Duration requestTimeout) {
+        this.baseURL = baseURL.endsWith("/") ? baseURL : baseURL + "/";
+        this.requestTimeout = requestTimeout;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Outcome of one form submission.
+     */
+    public record Response(CarbFormInput input, int status, ResultTable resultTable, boolean ageBoundaryWarning) {
+    }
+
+    public Response submit(CarbFormInput input) {
+        return submitAsync(input).join();
+    }
+
+    public CompletableFuture<Response> submitAsync(CarbFormInput input) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseURL + CARB_CALCULATOR_PATH + "?" + toQuery(input)))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> new Response(input, response.statusCode(),
+                        parseResultTable(response.body()), response.body().contains(AGE_BOUNDARY_WARNING)));
+    }
+
+    /**
+     * Query string the page's form would submit for the input; inputs without a metric
+     * height go to the US units tab.
+     */
+    public static String toQuery(CarbFormInput input) {
+        boolean usUnits = input.heightCm() == null;
+        StringBuilder query = new StringBuilder();
+        appendParam(query, "ctype", usUnits ? "standard" : "metric");
+        appendParam(query, "cage", input.age());
+        appendParam(query, "csex", input.gender().toLowerCase().startsWith("f") ? "f" : "m");
+        if (usUnits) {
+            appendParam(query, "cheightfeet", input.heightFeet());
+            appendParam(query, "cheightinch", input.heightInch());
+            appendParam(query, "cpound", input.weightPound());
+        } else {
+            appendParam(query, "cheightmeter", input.heightCm());
+            appendParam(query, "ckg", input.weightKg());
+        }
+        appendParam(query, "cactivity", ActivityLevel.fromText(input.activity()).getOptionValue());
+        appendParam(query, "cformula", BmrFormula.fromLabel(input.formula()).getFormValue());
+        if (input.bodyFat() != null)
+            appendParam(query, "cfatpct", input.bodyFat());
+        appendParam(query, "x", "Calculate");
+        return query.toString();
+    }
+
+    /**
+     * Cell texts of table.cinfoT, row by row, or an empty table when the page has none.
+     */
+    public static ResultTable parseResultTable(String html) {
+        // plain index lookups to cut out the table, regexes only run over the table itself
+        int start = html.indexOf(RESULT_TABLE_CLASS);
+        int end = start < 0 ? -1 : html.indexOf("</table>", start);
+        if (end < 0)
+            return ResultTable.empty();
+        List<List<String>> rows = new ArrayList<>();
+        Matcher row = ROW.matcher(html).region(start, end);
+        while (row.find()) {
+            List<String> cells = new ArrayList<>();
+            Matcher cell = CELL.matcher(row.group(1));
+            while (cell.find()) {
+                cells.add(cellText(cell.group(1)));
+            }
+            rows.add(cells);
+        }
+        return ResultTable.fromRows(rows);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        executor.shutdownNow();
+    }
+
+    private static String cellText(String cellHtml) {
+        return TAG.matcher(cellHtml).replaceAll("")
+                .replace("&nbsp;", " ")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&amp;", "&")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    private static void appendParam(StringBuilder query, String name, String value) {
+        if (value == null)
+            return;
+        if (!query.isEmpty())
+            query.append('&');
+        query.append(name).append('=').append(URLEncoder.encode(value.trim(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,224 @@
+package base;
+
+import Common.LatencyHistogram;
+import Pages.CarbFormInput;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Replays calculator flows as concurrent synthetic users, one virtual thread each.
+ * Users are started evenly over the ramp-up, share one iteration rate limit and stop
+ * starting iterations when the duration is over. Every flow step is timed into the
+ * user's own histograms, which are merged into the report once all users are done.
+ */
+public final class LoadGenerator {
+
+    private final static Logger logger = LogManager.getLogger(LoadGenerator.class);
+
+    private final LoadProfile profile;
+
+    public LoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * One flow of the functional suite and the inputs its iterations cycle through.
+     */
+    public record Flow(String name, List<CarbFormInput> inputs) {
+
+        public Flow {
+            if (inputs.isEmpty())
+                throw new IllegalArgumentException("Load flow " + name + " has no inputs");
+        }
+    }
+
+    /**
+     * A synthetic user's way of talking to the calculator (HTTP client, browser session).
+     * Opened on the user's thread and closed when the user stops.
+     */
+    public interface Session extends AutoCloseable {
+
+        /**
+         * Runs one iteration of the flow, timing each step through {@code steps}.
+         * Throwing (or failing an assertion) counts the iteration as failed.
+         */
+        void run(Flow flow, CarbFormInput input, Steps steps) throws Exception;
+
+        @Override
+        default void close() {
+        }
+    }
+
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * Per-user step timings, keyed "flow/step". Only used by the user's own thread.
+     */
+    public static final class Steps {
+
+        private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        private final Map<String, Long> errors = new LinkedHashMap<>();
+        private String flow = "";
+
+        public <T> T time(String step, Callable<T> body) throws Exception {
+            String key = flow + "/" + step;
+            long start = System.nanoTime();
+            try {
+                return body.call();
+            } catch (Exception | AssertionError e) {
+                errors.merge(key, 1L, Long::sum);
+                throw e;
+            } finally {
+                histograms.computeIfAbsent(key, name -> new LatencyHistogram()).record(System.nanoTime() - start);
+            }
+        }
+
+        public void time(String step, Action body) throws Exception {
+            time(step, () -> {
+                body.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Throughput and latency per flow step of a finished run.
+     */
+    public record Report(LoadProfile profile, Duration elapsed, long iterations, long failedIterations,
+                         Map<String, LatencyHistogram> steps, Map<String, Long> stepErrors) {
+
+        public double getFailureRate() {
+            return iterations == 0 ? 0 : (double) failedIterations / iterations;
+        }
+
+        public double getThroughput(String step) {
+            return steps.get(step).getCount() / Math.max(elapsed.toNanos() / 1e9, 1e-9);
+        }
+
+        public List<String> summaryLines() {
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%d iteration(s) in %d ms (%.1f per second), %d failed, %s",
+                    iterations, elapsed.toMillis(), iterations / Math.max(elapsed.toNanos() / 1e9, 1e-9),
+                    failedIterations, profile));
+            steps.forEach((step, histogram) -> lines.add(String.format(
+                    "  %-40s %7d calls %8.1f/s  p50=%.1f p95=%.1f p99=%.1f max=%.1f ms  errors=%d",
+                    step, histogram.getCount(), getThroughput(step),
+                    millis(histogram.getPercentileNanos(50)), millis(histogram.getPercentileNanos(95)),
+                    millis(histogram.getPercentileNanos(99)), millis(histogram.getMaxNanos()),
+                    stepErrors.getOrDefault(step, 0L))));
+            return lines;
+        }
+
+        public String toJson(String mode) {
+            Map<String, Object> stepSummaries = new LinkedHashMap<>();
+            steps.forEach((step, histogram) -> {
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("count", histogram.getCount());
+                summary.put("errors", stepErrors.getOrDefault(step, 0L));
+                summary.put("perSecond", Math.round(getThroughput(step) * 10) / 10.0);
+                summary.put("meanMs", millis(histogram.getMeanNanos()));
+                summary.put("p50Ms", millis(histogram.getPercentileNanos(50)));
+                summary.put("p95Ms", millis(histogram.getPercentileNanos(95)));
+                summary.put("p99Ms", millis(histogram.getPercentileNanos(99)));
+                summary.put("maxMs", millis(histogram.getMaxNanos()));
+                stepSummaries.put(step, summary);
+            });
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("mode", mode);
+            report.put("users", profile.users());
+            report.put("targetRatePerSecond", profile.ratePerSecond());
+            report.put("rampUpSeconds", profile.rampUp().toSeconds());
+            report.put("durationSeconds", profile.duration().toSeconds());
+            report.put("elapsedMs", elapsed.toMillis());
+            report.put("iterations", iterations);
+            report.put("failedIterations", failedIterations);
+            report.put("steps", stepSummaries);
+            return new Json().toJson(report);
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1_000.0) / 1_000.0;
+        }
+    }
+
+    /**
+     * Runs the profile's users until the duration is over and returns the merged figures.
+     * User i starts with flow i, so the flows are spread evenly from the first iteration.
+     */
+    public Report run(List<Flow> flows, Supplier<Session> sessions) {
+        int users = profile.users();
+        long start = System.nanoTime();
+        long end = start + profile.duration().toNanos();
+        long interval = profile.ratePerSecond() > 0 ? (long) (1_000_000_000L / profile.ratePerSecond()) : 0;
+        AtomicLong lastSlot = new AtomicLong(start - interval);
+        AtomicLong iterations = new AtomicLong();
+        AtomicLong failedIterations = new AtomicLong();
+        List<Steps> userSteps = new ArrayList<>(users);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 0; user < users; user++) {
+                int id = user;
+                long userStart = start + profile.rampUp().toNanos() * user / users;
+                Steps steps = new Steps();
+                userSteps.add(steps);
+                executor.submit(() -> {
+                    parkUntil(userStart);
+                    try (Session session = sessions.get()) {
+                        for (int i = id; ; i++) {
+                            long slot = interval == 0 ? System.nanoTime()
+                                    // no catching up on missed slots: a slow target gets the rate it can take
+                                    : lastSlot.updateAndGet(previous -> Math.max(previous + interval, System.nanoTime()));
+                            if (slot >= end)
+                                break;
+                            parkUntil(slot);
+                            Flow flow = flows.get(i % flows.size());
+                            CarbFormInput input = flow.inputs().get((i / flows.size()) % flow.inputs().size());
+                            steps.flow = flow.name();
+                            iterations.incrementAndGet();
+                            try {
+                                steps.time("iteration", () -> session.run(flow, input, steps));
+                            } catch (Exception | AssertionError e) {
+                                failedIterations.incrementAndGet();
+                                logger.debug("Load user {} failed {} with {}: {}", id, flow.name(), input, e.toString());
+                            }
+                        }
+                    } catch (Exception e) {
+                        logger.warn("Load user {} stopped: {}", id, e.toString());
+                    }
+                });
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        Map<String, LatencyHistogram> merged = new LinkedHashMap<>();
+        Map<String, Long> errors = new LinkedHashMap<>();
+        for (Steps steps : userSteps) {
+            steps.histograms.forEach((step, histogram) ->
+                    merged.computeIfAbsent(step, name -> new LatencyHistogram()).add(histogram));
+            steps.errors.forEach((step, count) -> errors.merge(step, count, Long::sum));
+        }
+        return new Report(profile, elapsed, iterations.get(), failedIterations.get(), merged, errors);
+    }
+
+    private static void parkUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package base;
+
+import java.time.Duration;
+
+/**
+ * Shape of a load run, read from test.load.*: concurrent synthetic users, the target
+ * iteration rate shared by all of them (0 = as fast as the users can go), the time over
+ * which users are started and the total run time including that ramp-up.
+ */
+public record LoadProfile(int users, double ratePerSecond, Duration rampUp, Duration duration) {
+
+    public LoadProfile {
+        if (users < 1)
+            throw new IllegalArgumentException("Load users must be at least 1: " + users);
+        if (ratePerSecond < 0)
+            throw new IllegalArgumentException("Load rate must not be negative: " + ratePerSecond);
+        if (rampUp.compareTo(duration) > 0)
+            throw new IllegalArgumentException("Load ramp-up " + rampUp + " is longer than the duration " + duration);
+    }
+
+    public static LoadProfile from(TestConfig config) {
+        return new LoadProfile(
+                config.getInt("test.load.users", 50),
+                config.getDouble("test.load.rate", 0),
+                Duration.ofSeconds(config.getInt("test.load.rampUp", 5)),
+                Duration.ofSeconds(config.getInt("test.load.duration", 30))
+        );
+    }
+
+    public LoadProfile withUsers(int users) {
+        return new LoadProfile(users, ratePerSecond, rampUp, duration);
+    }
+
+    @Override
+    public String toString() {
+        return users + " user(s), rate " + (ratePerSecond > 0 ? ratePerSecond + "/s" : "unthrottled")
+                + ", ramp-up " + rampUp.toSeconds() + " s, duration " + duration.toSeconds() + " s";
+    }
+}
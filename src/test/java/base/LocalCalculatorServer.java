@@ -0,0 +1,358 @@
+package base;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-JVM stand-in for calculator.net that serves captured copies of the carbohydrate
+ * calculator page and its unit-converter iframe from src/test/resources/localsite.
+ * Form submits are answered server-side by rendering the result table, so browser
+ * runs need no network access. The server does its own arithmetic, written from the
+ * live page's formulas and kept apart from the Oracle engine, so checking its results
+ * against the engine compares two implementations. The page also pulls fake third-party
+ * resources (ads, analytics, fonts, a tracking pixel) from the 127.0.0.1 origin,
+ * optionally delayed, so request blocking can be exercised and measured offline.
+ */
+public final class LocalCalculatorServer {
+
+    private final static Logger logger = LogManager.getLogger(LocalCalculatorServer.class);
+
+    private static final String SITE_ROOT = "localsite";
+    private static final String CARB_CALCULATOR_PATH = "/carbohydrate-calculator.html";
+    private static final String THIRD_PARTY_PATH = "/thirdparty/";
+    private static final Map<String, ThirdPartyResource> THIRD_PARTY_RESOURCES = Map.of(
+            "ads.js", new ThirdPartyResource("application/javascript", script(96 * 1024)),
+            "analytics.js", new ThirdPartyResource("application/javascript", script(48 * 1024)),
+            "fonts.css", new ThirdPartyResource("text/css", filler(24 * 1024)),
+            // 1x1 transparent GIF
+            "pixel.gif", new ThirdPartyResource("image/gif", new byte[]{
+                    'G', 'I', 'F', '8', '9', 'a', 1, 0, 1, 0, (byte) 0x80, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff,
+                    (byte) 0xff, '!', (byte) 0xf9, 4, 1, 0, 0, 0, 0, ',', 0, 0, 0, 0, 1, 0, 1, 0, 0, 2, 2, 'D', 1, 0, ';'})
+    );
+
+    // option text -> activity factor, in the order the page lists them
+    private static final Map<String, String> ACTIVITY_OPTIONS = new LinkedHashMap<>();
+
+    static {
+        ACTIVITY_OPTIONS.put("Basal Metabolic Rate (BMR)", "1");
+        ACTIVITY_OPTIONS.put("Sedentary: little or no exercise", "1.2");
+        ACTIVITY_OPTIONS.put("Light: exercise 1-3 times/week", "1.375");
+        ACTIVITY_OPTIONS.put("Moderate: exercise 4-5 times/week", "1.465");
+        ACTIVITY_OPTIONS.put("Active: daily exercise or intense exercise 3-4 times/week", "1.55");
+        ACTIVITY_OPTIONS.put("Very Active: intense exercise 6-7 times/week", "1.725");
+        ACTIVITY_OPTIONS.put("Extra Active: very intense exercise daily, or physical job", "1.9");
+    }
+
+    private static LocalCalculatorServer instance;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String carbCalculatorTemplate;
+    private final AtomicLong thirdPartyRequests = new AtomicLong();
+    private final AtomicLong thirdPartyBytes = new AtomicLong();
+    private volatile Duration thirdPartyDelay = Duration.ZERO;
+
+    private record ThirdPartyResource(String contentType, byte[] body) {
+    }
+
+    private LocalCalculatorServer(int port) throws IOException {
+        this.carbCalculatorTemplate = readResource(CARB_CALCULATOR_PATH);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Starts the shared server on first use; port 0 picks a free port.
+     */
+    public static synchronized LocalCalculatorServer start(int port) {
+        if (instance == null) {
+            try {
+                instance = new LocalCalculatorServer(port);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot start local calculator server", e);
+            }
+            logger.info("Local calculator server started at {}", instance.getBaseURL());
+        }
+        return instance;
+    }
+
+    public static synchronized void stopIfRunning() {
+        if (instance != null) {
+            instance.server.stop(0);
+            instance.executor.shutdownNow();
+            logger.info("Local calculator server stopped");
+            instance = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseURL() {
+        return "http://localhost:" + getPort() + "/";
+    }
+
+    /**
+     * Origin of the fake third-party resources: same server, but a different host to the browser.
+     */
+    public String getThirdPartyBaseURL() {
+        return "http://127.0.0.1:" + getPort() + "/";
+    }
+
+    /**
+     * Latency added to every third-party response, like ad and analytics servers have.
+     */
+    public void setThirdPartyDelay(Duration delay) {
+        this.thirdPartyDelay = delay;
+    }
+
+    public long getThirdPartyRequests() {
+        return thirdPartyRequests.get();
+    }
+
+    public long getThirdPartyBytes() {
+        return thirdPartyBytes.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain", "Method not allowed");
+            } else if (path.equals("/") || path.equals("/index.html")) {
+                send(exchange, 200, "text/html", readResource("/index.html"));
+            } else if (path.equals(CARB_CALCULATOR_PATH)) {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                send(exchange, 200, "text/html", renderCarbCalculator(params));
+            } else if (path.startsWith(THIRD_PARTY_PATH)
+                    && THIRD_PARTY_RESOURCES.containsKey(path.substring(THIRD_PARTY_PATH.length()))) {
+                sendThirdParty(exchange, THIRD_PARTY_RESOURCES.get(path.substring(THIRD_PARTY_PATH.length())));
+            } else if (path.startsWith("/converter/") && !path.contains("..") && hasResource(path)) {
+                send(exchange, 200, "text/html", readResource(path));
+            } else {
+                send(exchange, 404, "text/plain", "Not found: " + path);
+            }
+        }
+    }
+
+    String renderCarbCalculator(Map<String, String> params) {
+        String ctype = params.getOrDefault("ctype", "metric");
+        if (!ctype.equals("standard") && !ctype.equals("other"))
+            ctype = "metric";
+
+        String html = carbCalculatorTemplate
+                .replace("{{THIRD_PARTY}}", getThirdPartyBaseURL())
+                .replace("{{CTYPE}}", ctype)
+                .replace("{{TAB_STANDARD}}", ctype.equals("standard") ? " id=\"menuon\"" : "")
+                .replace("{{TAB_METRIC}}", ctype.equals("metric") ? " id=\"menuon\"" : "")
+                .replace("{{TAB_OTHER}}", ctype.equals("other") ? " id=\"menuon\"" : "");
+        html = keepSection(html, "standard", ctype.equals("standard"));
+        html = keepSection(html, "metric", !ctype.equals("standard"));
+        html = keepSection(html, "other", ctype.equals("other"));
+
+        String sex = params.getOrDefault("csex", "m");
+        String formula = params.getOrDefault("cformula", "m");
+        String activity = params.getOrDefault("cactivity", "1.465");
+        html = html
+                .replace("{{cage}}", escape(params.getOrDefault("cage", "25")))
+                .replace("{{csex_m}}", sex.equals("f") ? "" : " checked")
+                .replace("{{csex_f}}", sex.equals("f") ? " checked" : "")
+                .replace("{{cheightfeet}}", escape(params.getOrDefault("cheightfeet", "5")))
+                .replace("{{cheightinch}}", escape(params.getOrDefault("cheightinch", "10")))
+                .replace("{{cpound}}", escape(params.getOrDefault("cpound", "160")))
+                .replace("{{cheightmeter}}", escape(params.getOrDefault("cheightmeter", "180")))
+                .replace("{{ckg}}", escape(params.getOrDefault("ckg", "65")))
+                .replace("{{cformula_m}}", formula.equals("h") || formula.equals("k") ? "" : " checked")
+                .replace("{{cformula_h}}", formula.equals("h") ? " checked" : "")
+                .replace("{{cformula_k}}", formula.equals("k") ? " checked" : "")
+                .replace("{{cfatpct}}", escape(params.getOrDefault("cfatpct", "20")))
+                .replace("{{ACTIVITY_OPTIONS}}", activityOptions(activity));
+
+        String result = params.containsKey("x") ? renderResult(params, ctype) : "";
+        return html.replace("{{RESULT}}", result);
+    }
+
+    private String renderResult(Map<String, String> params, String ctype) {
+        boolean us = ctype.equals("standard");
+        double age = parsePositive(params.get("cage"));
+        double heightCm = us
+                ? (parsePositive(params.get("cheightfeet")) * 12 + parseNonNegative(params.get("cheightinch"))) * 2.54
+                : parsePositive(params.get("cheightmeter"));
+        double weightKg = us
+                ? parsePositive(params.get("cpound")) * 0.45359237
+                : parsePositive(params.get("ckg"));
+        double activity = parsePositive(params.get("cactivity"));
+        String formula = params.getOrDefault("cformula", "m");
+        double bodyFat = formula.equals("k") ? parsePositive(params.get("cfatpct")) : 0;
+
+        if (Double.isNaN(heightCm) || Double.isNaN(weightKg) || Double.isNaN(activity) || Double.isNaN(bodyFat))
+            return "<div><font color=\"red\">Please provide positive values for all fields.</font></div>";
+        if (Double.isNaN(age) || age < 18 || age > 80)
+            return "<div><font color=\"red\">Please provide an age between 18 and 80.</font></div>";
+
+        boolean male = !"f".equals(params.get("csex"));
+        double bmr = switch (formula) {
+            case "h" -> male
+                    ? 13.397 * weightKg + 4.799 * heightCm - 5.677 * age + 88.362
+                    : 9.247 * weightKg + 3.098 * heightCm - 4.330 * age + 447.593;
+            case "k" -> 370 + 21.6 * (1 - bodyFat / 100) * weightKg;
+            default -> 10 * weightKg + 6.25 * heightCm - 5 * age + (male ? 5 : -161);
+        };
+        double maintenance = bmr * activity;
+
+        String[] goals = us
+                ? new String[]{"Maintain weight", "Mild weight loss 0.5 lb/week", "Weight loss 1 lb/week",
+                        "Extreme weight loss 2 lb/week", "Mild weight gain 0.5 lb/week",
+                        "Weight gain 1 lb/week", "Fast weight gain 2 lb/week"}
+                : new String[]{"Maintain weight", "Mild weight loss 0.25 kg/week", "Weight loss 0.5 kg/week",
+                        "Extreme weight loss 1 kg/week", "Mild weight gain 0.25 kg/week",
+                        "Weight gain 0.5 kg/week", "Fast weight gain 1 kg/week"};
+        int[] deltas = {0, -250, -500, -1000, 250, 500, 1000};
+
+        StringBuilder table = new StringBuilder();
+        table.append("<h2>Result</h2>\n")
+                .append("<p>The results below are the daily carbohydrate intake, based on 45% - 65% of the daily calories.</p>\n")
+                .append("<table class=\"cinfoT\">\n")
+                .append("<tr><td class=\"cinfoHd\">Goal</td><td class=\"cinfoHd\">Daily Calorie Allowance</td>")
+                .append("<td class=\"cinfoHd\">Carbohydrates</td></tr>\n");
+        for (int i = 0; i < goals.length; i++) {
+            // like the live page, carb grams are derived from the rounded calorie figure
+            long calories = Math.round(maintenance + deltas[i]);
+            table.append("<tr><td>").append(goals[i]).append("</td><td>")
+                    .append(String.format(Locale.US, "%,d Calories", calories))
+                    .append("</td><td><b>")
+                    .append(Math.round(calories * 0.45 / 4)).append(" - ").append(Math.round(calories * 0.65 / 4))
+                    .append(" grams</b></td></tr>\n");
+        }
+        return table.append("</table>\n").toString();
+    }
+
+    private static String keepSection(String html, String name, boolean keep) {
+        String open = "<!--" + name + "-->";
+        String close = "<!--/" + name + "-->";
+        int start = html.indexOf(open);
+        int end = html.indexOf(close);
+        if (start < 0 || end < 0)
+            return html;
+        return keep
+                ? html.substring(0, start) + html.substring(start + open.length(), end) + html.substring(end + close.length())
+                : html.substring(0, start) + html.substring(end + close.length());
+    }
+
+    private static String activityOptions(String selected) {
+        StringBuilder options = new StringBuilder();
+        ACTIVITY_OPTIONS.forEach((text, value) -> options.append("                <option value=\"").append(value).append('"')
+                .append(value.equals(selected) ? " selected" : "")
+                .append('>').append(text).append("</option>\n"));
+        return options.toString();
+    }
+
+    private static double parsePositive(String value) {
+        double number = parseNonNegative(value);
+        return number > 0 ? number : Double.NaN;
+    }
+
+    private static double parseNonNegative(String value) {
+        if (value == null || value.isBlank())
+            return Double.NaN;
+        try {
+            double number = Double.parseDouble(value.trim());
+            return number >= 0 ? number : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty())
+            return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static boolean hasResource(String path) {
+        return LocalCalculatorServer.class.getClassLoader().getResource(SITE_ROOT + path) != null;
+    }
+
+    private static String readResource(String path) {
+        try (InputStream in = LocalCalculatorServer.class.getClassLoader().getResourceAsStream(SITE_ROOT + path)) {
+            if (in == null)
+                throw new UncheckedIOException(new IOException("Missing local site resource: " + SITE_ROOT + path));
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void sendThirdParty(HttpExchange exchange, ThirdPartyResource resource) throws IOException {
+        if (!thirdPartyDelay.isZero()) {
+            try {
+                Thread.sleep(thirdPartyDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        thirdPartyRequests.incrementAndGet();
+        thirdPartyBytes.addAndGet(resource.body().length);
+        exchange.getResponseHeaders().set("Content-Type", resource.contentType());
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, resource.body().length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(resource.body());
+        }
+    }
+
+    // counts the loaded third-party scripts in window.thirdPartyScripts, padded to the given size
+    private static byte[] script(int size) {
+        String counter = "window.thirdPartyScripts = (window.thirdPartyScripts || 0) + 1;\n";
+        return (counter + new String(filler(size - counter.length()), StandardCharsets.US_ASCII)).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] filler(int size) {
+        String line = "/* third-party filler */\n";
+        return line.repeat(size / line.length() + 1).substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IAlterSuiteListener;
+import org.testng.xml.XmlSuite;
+
+import java.util.List;
+
+/**
+ * Applies test.parallel, test.threadCount and test.dataProviderThreadCount from the test
+ * config to every suite before TestNG builds its worker pool. Registered through the surefire configuration.
+ */
+public class ParallelSuiteListener implements IAlterSuiteListener {
+
+    private final static Logger logger = LogManager.getLogger(ParallelSuiteListener.class);
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        TestConfig config = TestConfig.get();
+        XmlSuite.ParallelMode mode = XmlSuite.ParallelMode.getValidParallel(config.getParallelMode());
+        int threadCount = config.getThreadCount();
+        int dataProviderThreadCount = config.getInt("test.dataProviderThreadCount", threadCount);
+        for (XmlSuite suite : suites) {
+            suite.setParallel(mode);
+            suite.setThreadCount(threadCount);
+            suite.setDataProviderThreadCount(dataProviderThreadCount);
+            logger.info("Suite '{}' parallel={} threadCount={} dataProviderThreadCount={}",
+                    suite.getName(), mode, threadCount, dataProviderThreadCount);
+        }
+    }
+}
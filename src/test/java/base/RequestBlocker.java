@@ -0,0 +1,146 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.bidi.HasBiDi;
+import org.openqa.selenium.devtools.HasDevTools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Intercepts a browser's requests and fails the ones {@link RequestBlockingRules} blocks
+ * before they reach the network, counting per top-level navigation what was let through
+ * (requests, bytes received) and what was blocked (requests per host). Chromium browsers
+ * are intercepted through DevTools, Firefox through WebDriver BiDi.
+ */
+public abstract class RequestBlocker implements AutoCloseable {
+
+    protected final static Logger logger = LogManager.getLogger(RequestBlocker.class);
+
+    // navigations kept per session for reports and assertions
+    private static final int MAX_NAVIGATIONS = 50;
+
+    protected final RequestBlockingRules rules;
+    private final List<Navigation> navigations = new ArrayList<>();
+    private Navigation current = new Navigation("(before first navigation)");
+
+    protected RequestBlocker(RequestBlockingRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Installs blocking on a freshly created (undecorated) driver, or returns null when the
+     * driver supports neither DevTools nor BiDi.
+     */
+    public static RequestBlocker install(WebDriver driver, RequestBlockingRules rules) {
+        if (driver instanceof HasDevTools devTools && devTools.maybeGetDevTools().isPresent())
+            return new CdpRequestBlocker(devTools.getDevTools(), rules);
+        if (driver instanceof HasBiDi biDi && biDi.maybeGetBiDi().isPresent())
+            return new BidiRequestBlocker(driver, rules);
+        logger.warn("Request blocking is not supported by {}", driver.getClass().getSimpleName());
+        return null;
+    }
+
+    /**
+     * Counts of one top-level navigation.
+     */
+    public static final class Navigation {
+
+        private final String url;
+        private int allowedRequests;
+        private long bytesReceived;
+        private int blockedRequests;
+        private final Map<String, Integer> blockedHosts = new LinkedHashMap<>();
+
+        private Navigation(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public synchronized int getAllowedRequests() {
+            return allowedRequests;
+        }
+
+        public synchronized long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public synchronized int getBlockedRequests() {
+            return blockedRequests;
+        }
+
+        public synchronized Map<String, Integer> getBlockedHosts() {
+            return new LinkedHashMap<>(blockedHosts);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return url + ": " + allowedRequests + " request(s) allowed (" + bytesReceived / 1024 + " KB received), "
+                    + blockedRequests + " blocked " + blockedHosts;
+        }
+    }
+
+    public synchronized Navigation getCurrentNavigation() {
+        return current;
+    }
+
+    /**
+     * Finished navigations of this session, oldest first (the last MAX_NAVIGATIONS).
+     */
+    public synchronized List<Navigation> getNavigations() {
+        return Collections.unmodifiableList(new ArrayList<>(navigations));
+    }
+
+    /**
+     * A top-level document request: closes the current navigation's counts and starts new ones.
+     */
+    protected synchronized void onNavigation(String url) {
+        finish();
+        current = new Navigation(url);
+    }
+
+    /**
+     * Decides a request and counts it against the current navigation; true means block it.
+     */
+    protected synchronized boolean decide(String url) {
+        boolean blocked = rules.blocks(url);
+        synchronized (current) {
+            if (blocked) {
+                current.blockedRequests++;
+                current.blockedHosts.merge(RequestBlockingRules.hostOf(url), 1, Integer::sum);
+            } else {
+                current.allowedRequests++;
+            }
+        }
+        return blocked;
+    }
+
+    protected synchronized void onBytesReceived(long bytes) {
+        synchronized (current) {
+            current.bytesReceived += bytes;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        finish();
+        current = new Navigation(current.url);
+    }
+
+    private void finish() {
+        if (current.allowedRequests == 0 && current.blockedRequests == 0)
+            return;
+        logger.info("Navigation {}", current);
+        navigations.add(current);
+        if (navigations.size() > MAX_NAVIGATIONS)
+            navigations.remove(0);
+    }
+}
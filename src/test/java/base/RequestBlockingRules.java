@@ -0,0 +1,73 @@
+package base;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Which requests the browser may send, by host. A host listed in denyHosts (or a subdomain
+ * of one) is always blocked. With an empty allowHosts everything else is allowed; otherwise
+ * only the first-party host (the base URL's) and the allowed hosts are. Non-network URLs
+ * (data:, blob:, about:) are never blocked.
+ */
+public record RequestBlockingRules(String firstPartyHost, Set<String> allowHosts, Set<String> denyHosts) {
+
+    public static RequestBlockingRules from(TestConfig config, String baseURL) {
+        return new RequestBlockingRules(
+                hostOf(baseURL),
+                hosts(config.getString("test.blockRequests.allowHosts", "")),
+                hosts(config.getString("test.blockRequests.denyHosts", ""))
+        );
+    }
+
+    /**
+     * These rules with one more denied host.
+     */
+    public RequestBlockingRules denying(String host) {
+        Set<String> denied = new HashSet<>(denyHosts);
+        denied.add(host.toLowerCase(Locale.ROOT));
+        return new RequestBlockingRules(firstPartyHost, allowHosts, Set.copyOf(denied));
+    }
+
+    public boolean blocks(String url) {
+        String host = hostOf(url);
+        if (host.isEmpty())
+            return false;
+        if (matches(host, denyHosts))
+            return true;
+        return !allowHosts.isEmpty() && !host.equals(firstPartyHost) && !matches(host, allowHosts);
+    }
+
+    // parsed by hand: request URLs are not always valid java.net.URIs (unescaped characters)
+    static String hostOf(String url) {
+        int scheme = url.indexOf("://");
+        if (scheme < 0)
+            return "";
+        int start = scheme + 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0)
+            end++;
+        String authority = url.substring(start, end);
+        authority = authority.substring(authority.lastIndexOf('@') + 1);
+        int portStart = authority.startsWith("[") ? authority.indexOf(']') + 1 : authority.indexOf(':');
+        String host = portStart > 0 ? authority.substring(0, portStart) : authority;
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean matches(String host, Set<String> entries) {
+        for (String entry : entries) {
+            if (host.equals(entry) || host.endsWith("." + entry))
+                return true;
+        }
+        return false;
+    }
+
+    private static Set<String> hosts(String list) {
+        return Arrays.stream(list.split(","))
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .filter(host -> !host.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,227 @@
+package base;
+
+import Oracle.ActivityLevel;
+import Oracle.BmrFormula;
+import Oracle.CarbCalculatorEngine;
+import Pages.CarbFormInput;
+import Pages.ResultTable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Calculator result tables that already matched the reference engine, keyed by the host
+ * of the site that produced them (the public site, a mirror or the local server) and the
+ * normalized input: height and weight converted to cm and kg (so a metric and a US
+ * submission of the same person share an entry), age, gender, activity level, formula,
+ * and body fat when the formula uses it. Kept in memory as an LRU map of at most
+ * maxEntries and between runs in a JSON file; entries older than the TTL are not returned.
+ * A cached table keeps the goal labels of the submission that stored it, the calories and
+ * carb figures are the same in both unit systems.
+ */
+public final class ResultCache {
+
+    private final static Logger logger = LogManager.getLogger(ResultCache.class);
+
+    private static final int FILE_VERSION = 2;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long expired;
+
+    private record Entry(List<List<String>> rows, long storedAt) {
+    }
+
+    private ResultCache(Path file, Duration ttl, int maxEntries) {
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens the cache, reading the file of an earlier run when there is one. An unreadable
+     * file is reported and the cache starts empty.
+     */
+    public static ResultCache open(Path file, Duration ttl, int maxEntries) {
+        ResultCache cache = new ResultCache(file, ttl, maxEntries);
+        if (Files.exists(file)) {
+            try {
+                cache.load(Files.readString(file, StandardCharsets.UTF_8));
+            } catch (IOException | JsonException | ClassCastException e) {
+                logger.warn("Ignoring unreadable result cache {}: {}", file, e.getMessage());
+                cache.entries.clear();
+            }
+        }
+        logger.info("Result cache {}: {} entry(ies) loaded, TTL {} h, at most {} entries",
+                file, cache.size(), ttl.toHours(), maxEntries);
+        return cache;
+    }
+
+    /**
+     * Normalized key of a form input submitted to the site at baseURL, e.g.
+     * {@code www.calculator.net|25|m|180.34|65.00|MODERATE|KATCH_MCARDLE|20.00}. The port is
+     * left out, the local server gets a new one every run.
+     */
+    public static String key(String baseURL, CarbFormInput input) {
+        boolean usUnits = input.heightCm() == null;
+        double heightCm = usUnits
+                ? CarbCalculatorEngine.heightCm(Double.parseDouble(input.heightFeet()), Double.parseDouble(input.heightInch()))
+                : Double.parseDouble(input.heightCm());
+        double weightKg = usUnits
+                ? CarbCalculatorEngine.weightKg(Double.parseDouble(input.weightPound()))
+                : Double.parseDouble(input.weightKg());
+        BmrFormula formula = BmrFormula.fromLabel(input.formula());
+        String bodyFat = formula == BmrFormula.KATCH_MCARDLE && input.bodyFat() != null
+                ? String.format(Locale.ROOT, "%.2f", Double.parseDouble(input.bodyFat())) : "-";
+        return String.format(Locale.ROOT, "%s|%s|%s|%.2f|%.2f|%s|%s|%s",
+                URI.create(baseURL).getHost().toLowerCase(Locale.ROOT),
+                input.age().trim(),
+                input.gender().toLowerCase(Locale.ROOT).startsWith("f") ? "f" : "m",
+                heightCm,
+                weightKg,
+                ActivityLevel.fromText(input.activity()),
+                formula,
+                bodyFat);
+    }
+
+    /**
+     * The stored table for the input on the site at baseURL, or null (counted as a miss)
+     * when there is none or it expired.
+     */
+    public synchronized ResultTable get(String baseURL, CarbFormInput input) {
+        String key = key(baseURL, input);
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(key);
+            expired++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return ResultTable.fromRows(entry.rows());
+    }
+
+    /**
+     * Stores a verified, non-empty result of the site at baseURL. An entry that is still valid is kept with its
+     * original time, so a result is re-verified on the page at least once per TTL.
+     */
+    public synchronized void put(String baseURL, CarbFormInput input, ResultTable result) {
+        if (result.isEmpty())
+            return;
+        long now = System.currentTimeMillis();
+        String key = key(baseURL, input);
+        Entry entry = entries.get(key);
+        if (entry == null || isExpired(entry, now))
+            entries.put(key, new Entry(result.getRows(), now));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Takes over the other cache's entries that this one has no valid entry for, e.g. those
+     * of the shards of a sharded run.
+     */
+    public synchronized void merge(ResultCache other) {
+        long now = System.currentTimeMillis();
+        synchronized (other) {
+            other.entries.forEach((key, entry) -> {
+                Entry own = entries.get(key);
+                if ((own == null || isExpired(own, now)) && !isExpired(entry, now))
+                    entries.put(key, entry);
+            });
+        }
+    }
+
+    public synchronized void save() {
+        save(file);
+    }
+
+    /**
+     * Writes the valid entries to a file, least recently used first, through a temporary
+     * file so an interrupted run does not leave a truncated cache behind.
+     */
+    public synchronized void save(Path file) {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> saved = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> {
+            if (!isExpired(entry, now))
+                saved.add(Map.of("key", key, "storedAt", entry.storedAt(), "rows", entry.rows()));
+        });
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, new Json().toJson(Map.of("version", FILE_VERSION, "entries", saved)),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot write result cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * One line hit-rate report: lookups, hits (submissions avoided), misses, expired entries.
+     */
+    public synchronized String summary() {
+        long lookups = hits + misses;
+        return String.format(Locale.ROOT,
+                "Result cache: %d lookup(s), %d hit(s) (%.1f%%, submissions avoided), %d miss(es) (%d expired), %d entry(ies) in %s",
+                lookups, hits, lookups == 0 ? 0.0 : hits * 100.0 / lookups, misses, expired, entries.size(), file);
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.storedAt() > ttlMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load(String json) {
+        Map<String, Object> content = new Json().toType(json, Json.MAP_TYPE);
+        if (!(content.get("version") instanceof Number version) || version.intValue() != FILE_VERSION) {
+            logger.warn("Ignoring result cache {} of another format version: {}", file, content.get("version"));
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map<String, Object> saved : (List<Map<String, Object>>) content.get("entries")) {
+            Entry entry = new Entry((List<List<String>>) saved.get("rows"), ((Number) saved.get("storedAt")).longValue());
+            if (!isExpired(entry, now))
+                entries.put((String) saved.get("key"), entry);
+        }
+    }
+}
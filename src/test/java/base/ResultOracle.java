@@ -0,0 +1,82 @@
+package base;
+
+import Common.DependencyTrace;
+import Oracle.ActivityLevel;
+import Oracle.BmrFormula;
+import Oracle.CarbCalculatorEngine;
+import Oracle.CarbResult;
+import Oracle.Goal;
+import Pages.CarbFormInput;
+import Pages.ResultTable;
+import org.testng.Assert;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks a calculator result table against the in-JVM reference engine, for the
+ * browser and the HTTP tests alike.
+ */
+public final class ResultOracle {
+
+    // what a check against the engine runs through, for change-aware selection
+    private static final List<Class<?>> SOURCES = List.of(ResultOracle.class, CarbCalculatorEngine.class,
+            CarbResult.class, ActivityLevel.class, BmrFormula.class, Goal.class, CarbFormInput.class, ResultTable.class);
+
+    private ResultOracle() {
+    }
+
+    /**
+     * Recomputes the expected result from the same inputs the form was given.
+     */
+    public static CarbResult expected(CarbFormInput input, CarbResult out) {
+        if (DependencyTrace.isEnabled())
+            SOURCES.forEach(type -> DependencyTrace.record("source:" + type.getName()));
+        boolean usUnits = input.heightCm() == null;
+        double heightCm = usUnits
+                ? CarbCalculatorEngine.heightCm(Double.parseDouble(input.heightFeet()), Double.parseDouble(input.heightInch()))
+                : Double.parseDouble(input.heightCm());
+        double weightKg = usUnits
+                ? CarbCalculatorEngine.weightKg(Double.parseDouble(input.weightPound()))
+                : Double.parseDouble(input.weightKg());
+        return CarbCalculatorEngine.calculate(
+                Double.parseDouble(input.age()),
+                input.gender().toLowerCase().startsWith("m"),
+                heightCm,
+                weightKg,
+                ActivityLevel.fromText(input.activity()).getFactor(),
+                BmrFormula.fromLabel(input.formula()),
+                input.bodyFat() == null ? 0 : Double.parseDouble(input.bodyFat()),
+                out
+        );
+    }
+
+    /**
+     * Asserts every goal's calories and carb range are within the relative tolerance
+     * (and at least one unit, for figures the page rounds to whole numbers). Rows are
+     * matched to goals by their goal cell, not by their position.
+     */
+    public static void assertMatches(ResultTable actual, CarbResult expected, double tolerance) {
+        Assert.assertEquals(actual.getGoalCount(), Goal.values().length, "Unexpected number of goals in the result table.");
+        Set<Goal> seen = EnumSet.noneOf(Goal.class);
+        for (int i = 0; i < actual.getGoalCount(); i++) {
+            String label = actual.getGoalLabel(i);
+            Goal goal = Goal.fromLabel(label);
+            Assert.assertEquals(label, goal.getLabel(actual.isUS()), "Goal cell of result row " + (i + 1));
+            Assert.assertTrue(seen.add(goal), goal + " appears twice in the result table.");
+            assertWithinTolerance(actual.getDailyCalories(i), expected.getDailyCalories(goal), tolerance,
+                    goal + " daily calories");
+            assertWithinTolerance(actual.getCarbsGramsLow(i), expected.getCarbsGramsLow(goal), tolerance,
+                    goal + " carbs low");
+            assertWithinTolerance(actual.getCarbsGramsHigh(i), expected.getCarbsGramsHigh(goal), tolerance,
+                    goal + " carbs high");
+        }
+    }
+
+    private static void assertWithinTolerance(double actual, double expected, double tolerance, String what) {
+        double allowed = Math.max(Math.abs(expected) * tolerance, 1.0);
+        Assert.assertTrue(Math.abs(actual - expected) <= allowed,
+                what + ": page shows " + actual + ", engine expects " + Math.round(expected) + " (+/- " + allowed + ")");
+    }
+}
@@ -0,0 +1,143 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs this JVM's share of the suite when shard.count is above 1: plans all test methods
+ * and bulkData/pairwiseData rows with ShardPlan, drops the methods of other shards before
+ * TestNG schedules them, and leaves the row filtering to the data providers. Every run writes the
+ * duration of each unit it executed to shard.reportDir/test-durations.json; an unsharded
+ * run also folds them into shard.durationsFile, sharded runs leave that to
+ * ShardReportMerger. The same goes for the other histories (result cache, test
+ * dependencies, wait latencies): parallel shards would overwrite each other's, so a
+ * sharded run writes its part to shard.reportDir. Registered through the surefire configuration.
+ */
+public class ShardListener implements IMethodInterceptor, IInvokedMethodListener, ISuiteListener {
+
+    private final static Logger logger = LogManager.getLogger(ShardListener.class);
+
+    static final String DURATIONS_FILE_NAME = "test-durations.json";
+
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        TestConfig config = TestConfig.get();
+        int count = config.getInt("shard.count", 1);
+        if (count <= 1)
+            return methods;
+
+        String bulkDataFile = bulkDataFile();
+        List<String> units = new ArrayList<>();
+        Map<IMethodInstance, List<String>> unitsOf = new HashMap<>();
+        for (IMethodInstance method : methods) {
+            List<String> own = unitsOf(method.getMethod(), bulkDataFile);
+            unitsOf.put(method, own);
+            units.addAll(own);
+        }
+        ShardPlan plan = ShardPlan.plan(config.getInt("shard.index", 0), count, units,
+                ShardPlan.readDurations(durationsFile()));
+        ShardPlan.setCurrent(plan);
+
+        List<IMethodInstance> selected = new ArrayList<>();
+        for (IMethodInstance method : methods) {
+            if (unitsOf.get(method).stream().anyMatch(plan::owns))
+                selected.add(method);
+        }
+        logger.info("Suite '{}' {}, {} of {} test method(s)", context.getName(), plan, selected.size(), methods.size());
+        for (int shard = 0; shard < count; shard++)
+            logger.debug("shard {}: {} unit(s), ~{} ms", shard, plan.getUnitCount(shard), plan.getEstimatedMillis(shard));
+        return selected;
+    }
+
+    /**
+     * A bulkData or pairwiseData method is one unit per data row, any other method a single unit.
+     */
+    private static List<String> unitsOf(ITestNGMethod method, String bulkDataFile) {
+        Method javaMethod = method.getConstructorOrMethod().getMethod();
+        Class<?> testClass = javaMethod.getDeclaringClass();
+        Test test = javaMethod.getAnnotation(Test.class);
+        String provider = test == null ? "" : test.dataProvider();
+        List<String> rows = new ArrayList<>();
+        if (provider.equals("bulkData")) {
+            TestDataStream stream = TestDataStream.forTest(bulkDataFile, javaMethod.getName());
+            while (stream.hasNext()) {
+                TestDataStream.DataRow row = (TestDataStream.DataRow) stream.next()[0];
+                rows.add(ShardPlan.rowUnit(testClass, javaMethod.getName(), row.lineNumber()));
+            }
+        } else if (provider.equals("pairwiseData")) {
+            for (TestDataStream.DataRow row : CarbInputSpace.configuredRows(TestConfig.get()))
+                rows.add(ShardPlan.rowUnit(testClass, javaMethod.getName(), row.lineNumber()));
+        } else {
+            rows.add(ShardPlan.methodUnit(testClass, javaMethod.getName()));
+        }
+        return rows;
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod())
+            return;
+        Method javaMethod = testResult.getMethod().getConstructorOrMethod().getMethod();
+        Object[] parameters = testResult.getParameters();
+        String unit = parameters.length > 0 && parameters[0] instanceof TestDataStream.DataRow row
+                ? ShardPlan.rowUnit(javaMethod.getDeclaringClass(), javaMethod.getName(), row.lineNumber())
+                : ShardPlan.methodUnit(javaMethod.getDeclaringClass(), javaMethod.getName());
+        durations.merge(unit, Math.max(0, testResult.getEndMillis() - testResult.getStartMillis()), Long::sum);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        if (durations.isEmpty())
+            return;
+        ShardPlan.writeDurations(reportDir().resolve(DURATIONS_FILE_NAME), durations);
+        if (!isSharded()) {
+            Path history = durationsFile();
+            ShardPlan.writeDurations(history, ShardPlan.mergeDurations(ShardPlan.readDurations(history), durations));
+            logger.info("Recorded the durations of {} unit(s) in {}", durations.size(), history);
+        }
+        durations.clear();
+        ShardPlan.setCurrent(null);
+    }
+
+    /**
+     * Whether this JVM runs one of several shards, which must not write the shared history files.
+     */
+    static boolean isSharded() {
+        return TestConfig.get().getInt("shard.count", 1) > 1;
+    }
+
+    /**
+     * Where this run's reports go, one directory per shard in a sharded run.
+     */
+    static Path reportDir() {
+        return Path.of(TestConfig.get().getString("shard.reportDir", "target/surefire-reports"));
+    }
+
+    static Path durationsFile() {
+        return Path.of(TestConfig.get().getString("shard.durationsFile", ".test-history/test-durations.json"));
+    }
+
+    static String bulkDataFile() {
+        return TestConfig.get().getString("test.bulkDataFile", "src/main/resources/dataset/CarbCalculatorTestData.txt");
+    }
+}
@@ -0,0 +1,230 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Deterministic split of a suite's work units (test methods, and each data row of a
+ * data-driven method) over shard.count shards. Units are placed longest first on the
+ * least loaded shard (LPT), using their historical durations, so every JVM given the same
+ * units and history computes the same plan and the shards finish at about the same time.
+ * Units without history are estimated from their method's other rows, else from the mean.
+ */
+public final class ShardPlan {
+
+    private final static Logger logger = LogManager.getLogger(ShardPlan.class);
+
+    private static final long DEFAULT_UNIT_MILLIS = 1000;
+    private static final int FILE_VERSION = 1;
+
+    // the plan of this JVM's suite, read by the data providers to filter their rows
+    private static volatile ShardPlan current;
+
+    private final int index;
+    private final int count;
+    private final Map<String, Integer> assignment;
+    private final long[] estimatedMillis;
+
+    private ShardPlan(int index, int count, Map<String, Integer> assignment, long[] estimatedMillis) {
+        this.index = index;
+        this.count = count;
+        this.assignment = assignment;
+        this.estimatedMillis = estimatedMillis;
+    }
+
+    /**
+     * Plans the units over count shards from their historical durations in milliseconds.
+     */
+    public static ShardPlan plan(int index, int count, List<String> units, Map<String, Long> durations) {
+        if (count < 1 || index < 0 || index >= count)
+            throw new IllegalArgumentException("shard.index must be in [0, shard.count), got " + index + " of " + count);
+        Map<String, Long> estimates = estimate(units, durations);
+        List<String> ordered = new ArrayList<>(estimates.keySet());
+        ordered.sort(Comparator.comparingLong((String unit) -> estimates.get(unit)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+
+        long[] loads = new long[count];
+        Map<String, Integer> assignment = new HashMap<>();
+        for (String unit : ordered) {
+            int lightest = 0;
+            for (int shard = 1; shard < count; shard++) {
+                if (loads[shard] < loads[lightest])
+                    lightest = shard;
+            }
+            assignment.put(unit, lightest);
+            loads[lightest] += estimates.get(unit);
+        }
+        return new ShardPlan(index, count, assignment, loads);
+    }
+
+    private static Map<String, Long> estimate(List<String> units, Map<String, Long> durations) {
+        long mean = Math.round(durations.values().stream().mapToLong(Long::longValue).average()
+                .orElse(DEFAULT_UNIT_MILLIS));
+        Map<String, long[]> perMethod = new HashMap<>();
+        durations.forEach((unit, millis) -> {
+            long[] sum = perMethod.computeIfAbsent(methodOf(unit), method -> new long[2]);
+            sum[0] += millis;
+            sum[1]++;
+        });
+        // sorted, so the plan does not depend on the order TestNG listed the methods in
+        Map<String, Long> estimates = new TreeMap<>();
+        for (String unit : units) {
+            Long known = durations.get(unit);
+            long[] method = perMethod.get(methodOf(unit));
+            estimates.put(unit, known != null ? known : method != null ? method[0] / method[1] : mean);
+        }
+        return estimates;
+    }
+
+    public static String methodUnit(Class<?> testClass, String method) {
+        return testClass.getName() + "#" + method;
+    }
+
+    public static String rowUnit(Class<?> testClass, String method, int lineNumber) {
+        return methodUnit(testClass, method) + "@" + lineNumber;
+    }
+
+    private static String methodOf(String unit) {
+        int row = unit.indexOf('@');
+        return row < 0 ? unit : unit.substring(0, row);
+    }
+
+    /**
+     * Whether this shard runs the unit. Units the plan was not made with (e.g. rows added
+     * to the data file since) go by a stable hash of their name.
+     */
+    public boolean owns(String unit) {
+        Integer shard = assignment.get(unit);
+        return (shard != null ? shard : Math.floorMod(unit.hashCode(), count)) == index;
+    }
+
+    /**
+     * The rows of a data-driven method that belong to this shard; reads the source to the end.
+     */
+    public Iterator<Object[]> filterRows(Class<?> testClass, String method, Iterator<Object[]> rows) {
+        return new Iterator<>() {
+            private Object[] next;
+
+            @Override
+            public synchronized boolean hasNext() {
+                while (next == null && rows.hasNext()) {
+                    Object[] row = rows.next();
+                    if (!(row[0] instanceof TestDataStream.DataRow dataRow)
+                            || owns(rowUnit(testClass, method, dataRow.lineNumber())))
+                        next = row;
+                }
+                return next != null;
+            }
+
+            @Override
+            public synchronized Object[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Object[] row = next;
+                next = null;
+                return row;
+            }
+        };
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getEstimatedMillis(int shard) {
+        return estimatedMillis[shard];
+    }
+
+    public int getUnitCount(int shard) {
+        return (int) assignment.values().stream().filter(assigned -> assigned == shard).count();
+    }
+
+    @Override
+    public String toString() {
+        long total = 0;
+        long max = 0;
+        for (long millis : estimatedMillis) {
+            total += millis;
+            max = Math.max(max, millis);
+        }
+        return String.format("shard %d/%d: %d of %d unit(s), ~%d s of ~%d s estimated (slowest shard ~%d s)",
+                index, count, getUnitCount(index), assignment.size(), estimatedMillis[index] / 1000, total / 1000,
+                max / 1000);
+    }
+
+    static void setCurrent(ShardPlan plan) {
+        current = plan;
+    }
+
+    /**
+     * The plan of the running suite, or null when it is not sharded.
+     */
+    public static ShardPlan current() {
+        return current;
+    }
+
+    /**
+     * Unit durations in milliseconds from a durations file, empty when there is none.
+     */
+    public static Map<String, Long> readDurations(Path file) {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        if (!Files.exists(file))
+            return durations;
+        try {
+            Map<String, Object> content = new Json().toType(Files.readString(file, StandardCharsets.UTF_8), Json.MAP_TYPE);
+            if (content.get("version") instanceof Number version && version.intValue() == FILE_VERSION
+                    && content.get("units") instanceof Map<?, ?> units) {
+                units.forEach((unit, millis) -> durations.put((String) unit, ((Number) millis).longValue()));
+            } else {
+                logger.warn("Ignoring test durations {} of another format version", file);
+            }
+        } catch (IOException | JsonException | ClassCastException e) {
+            logger.warn("Ignoring unreadable test durations {}: {}", file, e.getMessage());
+        }
+        return durations;
+    }
+
+    public static void writeDurations(Path file, Map<String, Long> durations) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, new Json().toJson(Map.of("version", FILE_VERSION, "units", new TreeMap<>(durations))),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot write test durations {}", file, e);
+        }
+    }
+
+    /**
+     * Folds a run's durations into the history: the mean of the old and the new figure,
+     * so one slow run does not reshuffle every shard.
+     */
+    public static Map<String, Long> mergeDurations(Map<String, Long> history, Map<String, Long> run) {
+        Map<String, Long> merged = new LinkedHashMap<>(history);
+        run.forEach((unit, millis) -> merged.merge(unit, millis, (old, sample) -> (old + sample) / 2));
+        return merged;
+    }
+}
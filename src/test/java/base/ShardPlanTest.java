@@ -0,0 +1,126 @@
+package base;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ShardPlan: every JVM computes the same plan, the shards partition the units, and the
+ * longest-first placement keeps the shards even.
+ */
+public class ShardPlanTest {
+
+    private static final int SHARDS = 4;
+
+    // 60 rows of a data-driven method and 20 plain methods with seeded durations; a few without history
+    private static List<String> units() {
+        List<String> units = new ArrayList<>();
+        for (int row = 1; row <= 60; row++)
+            units.add(ShardPlan.rowUnit(ShardPlanTest.class, "bulk", row));
+        for (int method = 0; method < 20; method++)
+            units.add(ShardPlan.methodUnit(ShardPlanTest.class, "method" + method));
+        return units;
+    }
+
+    private static Map<String, Long> durations(List<String> units) {
+        Random random = new Random(42);
+        Map<String, Long> durations = new HashMap<>();
+        for (String unit : units) {
+            if (!unit.endsWith("@7") && !unit.endsWith("method3"))
+                durations.put(unit, 100 + (long) random.nextInt(20_000));
+        }
+        return durations;
+    }
+
+    @Test
+    public void planDoesNotDependOnUnitOrderOrShardIndex() {
+        List<String> units = units();
+        Map<String, Long> durations = durations(units);
+        List<String> shuffled = new ArrayList<>(units);
+        Collections.shuffle(shuffled, new Random(7));
+
+        for (int index = 0; index < SHARDS; index++) {
+            ShardPlan plan = ShardPlan.plan(index, SHARDS, units, durations);
+            ShardPlan reordered = ShardPlan.plan(index, SHARDS, shuffled, new HashMap<>(durations));
+            ShardPlan other = ShardPlan.plan((index + 1) % SHARDS, SHARDS, units, durations);
+            for (int shard = 0; shard < SHARDS; shard++) {
+                Assert.assertEquals(reordered.getEstimatedMillis(shard), plan.getEstimatedMillis(shard));
+                Assert.assertEquals(other.getEstimatedMillis(shard), plan.getEstimatedMillis(shard));
+            }
+            for (String unit : units)
+                Assert.assertEquals(reordered.owns(unit), plan.owns(unit), unit);
+        }
+    }
+
+    @Test
+    public void everyUnitBelongsToExactlyOneShard() {
+        List<String> units = units();
+        Map<String, Long> durations = durations(units);
+        List<ShardPlan> plans = new ArrayList<>();
+        for (int index = 0; index < SHARDS; index++)
+            plans.add(ShardPlan.plan(index, SHARDS, units, durations));
+
+        // planned units, plus rows added to the data file after the plan was made
+        List<String> all = new ArrayList<>(units);
+        for (int row = 61; row <= 70; row++)
+            all.add(ShardPlan.rowUnit(ShardPlanTest.class, "bulk", row));
+        for (String unit : all)
+            Assert.assertEquals(plans.stream().filter(plan -> plan.owns(unit)).count(), 1L, unit);
+
+        int planned = 0;
+        for (int shard = 0; shard < SHARDS; shard++)
+            planned += plans.get(0).getUnitCount(shard);
+        Assert.assertEquals(planned, units.size());
+    }
+
+    @Test
+    public void unitsWithoutHistoryAreEstimatedFromTheirMethod() {
+        String first = ShardPlan.rowUnit(ShardPlanTest.class, "bulk", 1);
+        String second = ShardPlan.rowUnit(ShardPlanTest.class, "bulk", 2);
+        String added = ShardPlan.rowUnit(ShardPlanTest.class, "bulk", 3);
+        String unknown = ShardPlan.methodUnit(ShardPlanTest.class, "unknown");
+        ShardPlan plan = ShardPlan.plan(0, 1, List.of(first, second, added, unknown), Map.of(first, 100L, second, 300L));
+        // the added row gets the mean of its method's rows (200), the unknown method the overall mean (200)
+        Assert.assertEquals(plan.getEstimatedMillis(0), 100 + 300 + 200 + 200);
+    }
+
+    @Test
+    public void longestFirstPlacementBalancesTheShards() {
+        // 7 6 5 4 3 2 over two shards: 7+4+3 and 6+5+2
+        List<String> units = new ArrayList<>();
+        Map<String, Long> durations = new HashMap<>();
+        for (long millis = 2; millis <= 7; millis++) {
+            String unit = ShardPlan.methodUnit(ShardPlanTest.class, "m" + millis);
+            units.add(unit);
+            durations.put(unit, millis);
+        }
+        ShardPlan small = ShardPlan.plan(0, 2, units, durations);
+        Assert.assertEquals(small.getEstimatedMillis(0), 14);
+        Assert.assertEquals(small.getEstimatedMillis(1), 13);
+
+        // Graham's bound for greedy placement: no shard exceeds the mean load by more than (1 - 1/m) of the longest unit
+        List<String> many = units();
+        Map<String, Long> manyDurations = durations(many);
+        ShardPlan plan = ShardPlan.plan(0, SHARDS, many, manyDurations);
+        long total = 0;
+        long slowest = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            total += plan.getEstimatedMillis(shard);
+            slowest = Math.max(slowest, plan.getEstimatedMillis(shard));
+        }
+        long longest = manyDurations.values().stream().mapToLong(Long::longValue).max().orElseThrow();
+        Assert.assertTrue(slowest <= (double) total / SHARDS + longest * (1 - 1.0 / SHARDS),
+                "slowest shard " + slowest + " ms of " + total + " ms total, longest unit " + longest + " ms");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rejectsAnIndexOutsideTheShardCount() {
+        ShardPlan.plan(SHARDS, SHARDS, units(), Map.of());
+    }
+}
@@ -0,0 +1,289 @@
+package base;
+
+import Common.TimeoutManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Combines the report directories of a sharded run into one:
+ * <ul>
+ *   <li>testng-results.xml: the shards' suites side by side (named "... [shard N]"), totals summed</li>
+ *   <li>TEST-*.xml (JUnit format): test cases of the same file concatenated, counts and time summed</li>
+ *   <li>action-timings, command-stats, load: the per-test JSON files copied together</li>
+ *   <li>test-durations.json: all units' durations, also folded into shard.durationsFile for the next plan</li>
+ *   <li>the shards' parts of the other histories, folded into test.resultCache.file,
+ *   test.selection.file and test.adaptiveTimeouts.file (wait-timeouts.json: the timeouts
+ *   learned from them)</li>
+ *   <li>test-selection.json: the selection decisions of all shards; pairwise-coverage.json:
+ *   the coverage report (the same in every shard)</li>
+ *   <li>shard-summary.json: results and busy time per shard, and how even the shards were</li>
+ * </ul>
+ * Usage: {@code ShardReportMerger <output dir> <shard report dir>...}. Exits with 1 when a
+ * test failed and 2 when a shard has no TestNG results.
+ */
+public final class ShardReportMerger {
+
+    private final static Logger logger = LogManager.getLogger(ShardReportMerger.class);
+
+    private static final String TESTNG_RESULTS = "testng-results.xml";
+    private static final List<String> TOTALS = List.of("total", "passed", "failed", "skipped", "ignored");
+    private static final List<String> JUNIT_COUNTS = List.of("tests", "failures", "errors", "skipped");
+    private static final List<String> TIMING_DIRS = List.of("action-timings", "command-stats", "load");
+    // the per-shard report files scripts/run-shards.sh points each shard at
+    private static final String SELECTION_REPORT = "test-selection.json";
+    private static final String PAIRWISE_REPORT = "pairwise-coverage.json";
+    private static final String TIMEOUT_REPORT = "wait-timeouts.json";
+
+    private final Path output;
+    private final List<Path> shards;
+
+    public ShardReportMerger(Path output, List<Path> shards) {
+        this.output = output;
+        this.shards = shards;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: ShardReportMerger <output dir> <shard report dir>...");
+            System.exit(2);
+        }
+        List<Path> shards = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+            shards.add(Path.of(args[i]));
+        System.exit(new ShardReportMerger(Path.of(args[0]), shards).merge());
+    }
+
+    /**
+     * Writes the merged reports and returns the exit status (0 passed, 1 failures, 2 missing results).
+     */
+    public int merge() throws IOException, ParserConfigurationException, SAXException, TransformerException {
+        Files.createDirectories(output);
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        boolean missingResults = false;
+        Map<String, Long> durations = new TreeMap<>();
+
+        DocumentBuilder builder = documentBuilder();
+        Document results = builder.newDocument();
+        Element root = results.createElement("testng-results");
+        results.appendChild(root);
+        Map<String, Long> totals = new LinkedHashMap<>();
+        TOTALS.forEach(total -> totals.put(total, 0L));
+        Map<String, Document> junitReports = new TreeMap<>();
+
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Path dir = shards.get(shard);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("shard", dir.getFileName().toString());
+
+            Path testngResults = dir.resolve(TESTNG_RESULTS);
+            if (Files.exists(testngResults)) {
+                Element shardRoot = builder.parse(testngResults.toFile()).getDocumentElement();
+                for (String total : TOTALS) {
+                    long value = longAttribute(shardRoot, total);
+                    totals.merge(total, value, Long::sum);
+                    summary.put(total, value);
+                }
+                NodeList suites = shardRoot.getElementsByTagName("suite");
+                for (int i = 0; i < suites.getLength(); i++) {
+                    Element suite = (Element) results.importNode(suites.item(i), true);
+                    suite.setAttribute("name", suite.getAttribute("name") + " [" + dir.getFileName() + "]");
+                    root.appendChild(suite);
+                }
+            } else {
+                logger.error("No {} in shard {}", TESTNG_RESULTS, dir);
+                missingResults = true;
+            }
+
+            mergeJunitReports(builder, dir, junitReports);
+            for (String timingDir : TIMING_DIRS)
+                copyJson(dir.resolve(timingDir), output.resolve(timingDir), dir.getFileName() + "-");
+
+            Map<String, Long> shardDurations = ShardPlan.readDurations(dir.resolve(ShardListener.DURATIONS_FILE_NAME));
+            shardDurations.forEach((unit, millis) -> durations.merge(unit, millis, Long::sum));
+            summary.put("units", shardDurations.size());
+            summary.put("busyMs", shardDurations.values().stream().mapToLong(Long::longValue).sum());
+            summaries.add(summary);
+        }
+
+        totals.forEach((total, value) -> root.setAttribute(total, String.valueOf(value)));
+        write(results, output.resolve(TESTNG_RESULTS));
+        for (Map.Entry<String, Document> report : junitReports.entrySet())
+            write(report.getValue(), output.resolve(report.getKey()));
+
+        ShardPlan.writeDurations(output.resolve(ShardListener.DURATIONS_FILE_NAME), durations);
+        if (!durations.isEmpty()) {
+            Path history = ShardListener.durationsFile();
+            ShardPlan.writeDurations(history, ShardPlan.mergeDurations(ShardPlan.readDurations(history), durations));
+        }
+        mergeHistories();
+        writeSummary(summaries, totals);
+        return missingResults ? 2 : totals.get("failed") > 0 ? 1 : 0;
+    }
+
+    /**
+     * Folds the parts of the result cache, wait latency and test dependency histories the
+     * shards wrote instead of the shared files, and merges the reports built from them.
+     */
+    private void mergeHistories() throws IOException {
+        TestConfig config = TestConfig.get();
+        List<Path> caches = shardFiles(BaseTest.RESULT_CACHE_FILE_NAME);
+        if (!caches.isEmpty()) {
+            ResultCache cache = BaseTest.openResultCache(config,
+                    Path.of(config.getString("test.resultCache.file", ".test-history/result-cache.json")));
+            for (Path file : caches)
+                cache.merge(BaseTest.openResultCache(config, file));
+            cache.save();
+            logger.info("Merged the result caches of {} shard(s): {} entry(ies)", caches.size(), cache.size());
+        }
+        List<Path> latencies = shardFiles(BaseTest.WAIT_LATENCIES_FILE_NAME);
+        if (!latencies.isEmpty()) {
+            TimeoutManager timeouts = BaseTest.openTimeoutManager(config);
+            latencies.forEach(timeouts::addRun);
+            timeouts.save();
+            Files.writeString(output.resolve(TIMEOUT_REPORT), timeouts.reportJson(), StandardCharsets.UTF_8);
+            logger.info("Merged the wait latencies of {} shard(s): {}", latencies.size(), timeouts.summary());
+        }
+        ChangeAwareSelector.mergeShardRecords(shards);
+
+        List<Object> decisions = new ArrayList<>();
+        for (Path file : shardFiles(SELECTION_REPORT)) {
+            Map<String, Object> report = new Json().toType(Files.readString(file, StandardCharsets.UTF_8), Json.MAP_TYPE);
+            if (report.get("decisions") instanceof List<?> list)
+                decisions.addAll(list);
+        }
+        if (!decisions.isEmpty())
+            Files.writeString(output.resolve(SELECTION_REPORT), new Json().toJson(Map.of("decisions", decisions)),
+                    StandardCharsets.UTF_8);
+        List<Path> coverage = shardFiles(PAIRWISE_REPORT);
+        if (!coverage.isEmpty())
+            Files.copy(coverage.get(0), output.resolve(PAIRWISE_REPORT), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private List<Path> shardFiles(String name) {
+        return shards.stream().map(dir -> dir.resolve(name)).filter(Files::exists).toList();
+    }
+
+    private void writeSummary(List<Map<String, Object>> summaries, Map<String, Long> totals) throws IOException {
+        long slowest = summaries.stream().mapToLong(summary -> (Long) summary.get("busyMs")).max().orElse(0);
+        double mean = summaries.stream().mapToLong(summary -> (Long) summary.get("busyMs")).average().orElse(0);
+        // 1.0 means every shard was busy for the same time
+        double imbalance = mean == 0 ? 1.0 : slowest / mean;
+        for (Map<String, Object> summary : summaries)
+            logger.info("{}: {} test(s), {} passed, {} failed, {} skipped, {} unit(s) in {} ms", summary.get("shard"),
+                    summary.get("total"), summary.get("passed"), summary.get("failed"), summary.get("skipped"),
+                    summary.get("units"), summary.get("busyMs"));
+        logger.info("Merged {} shard(s) into {}: {} test(s), {} passed, {} failed, {} skipped; slowest shard {} ms, imbalance {}",
+                summaries.size(), output, totals.get("total"), totals.get("passed"), totals.get("failed"),
+                totals.get("skipped"), slowest, String.format(Locale.ROOT, "%.2f", imbalance));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("totals", totals);
+        report.put("slowestShardMs", slowest);
+        report.put("imbalance", imbalance);
+        report.put("shards", summaries);
+        Files.writeString(output.resolve("shard-summary.json"), new Json().toJson(report), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the test cases of each TEST-*.xml to the report of the same name, summing its counts and time.
+     */
+    private static void mergeJunitReports(DocumentBuilder builder, Path dir, Map<String, Document> reports)
+            throws IOException, SAXException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(file -> file.getFileName().toString().matches("TEST-.*\\.xml")).sorted().toList();
+        }
+        for (Path file : files) {
+            Element suite = builder.parse(file.toFile()).getDocumentElement();
+            Document merged = reports.get(file.getFileName().toString());
+            if (merged == null) {
+                merged = builder.newDocument();
+                merged.appendChild(merged.importNode(suite, true));
+                reports.put(file.getFileName().toString(), merged);
+                continue;
+            }
+            Element target = merged.getDocumentElement();
+            for (String count : JUNIT_COUNTS)
+                target.setAttribute(count, String.valueOf(longAttribute(target, count) + longAttribute(suite, count)));
+            target.setAttribute("time", String.format(Locale.ROOT, "%.3f",
+                    doubleAttribute(target, "time") + doubleAttribute(suite, "time")));
+            NodeList children = suite.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child instanceof Element element && element.getTagName().equals("testcase"))
+                    target.appendChild(merged.importNode(element, true));
+            }
+        }
+    }
+
+    private static void copyJson(Path from, Path to, String prefixOnClash) throws IOException {
+        if (!Files.isDirectory(from))
+            return;
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".json")).forEach(file -> {
+                Path target = to.resolve(file.getFileName().toString());
+                if (Files.exists(target))
+                    target = to.resolve(prefixOnClash + file.getFileName());
+                try {
+                    Files.copy(file, target);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private static long longAttribute(Element element, String name) {
+        String value = element.getAttribute(name);
+        return value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    private static double doubleAttribute(Element element, String name) {
+        String value = element.getAttribute(name).replace(",", "");
+        return value.isEmpty() ? 0 : Double.parseDouble(value);
+    }
+
+    private static DocumentBuilder documentBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // the reports are local files; no DTDs or external entities to resolve
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setExpandEntityReferences(false);
+        return factory.newDocumentBuilder();
+    }
+
+    private static void write(Document document, Path file) throws TransformerException {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.transform(new DOMSource(document), new StreamResult(file.toFile()));
+    }
+}
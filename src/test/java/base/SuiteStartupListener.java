@@ -0,0 +1,62 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports how long a suite takes from its start to the first test method starting and to
+ * the first test result (its assertions done; skipped tests do not count), which is where
+ * browser prewarming and the overlapped config/test data loading pay off. Registered through
+ * the surefire configuration.
+ */
+public class SuiteStartupListener implements ISuiteListener, IInvokedMethodListener {
+
+    private final static Logger logger = LogManager.getLogger(SuiteStartupListener.class);
+
+    private final AtomicLong suiteStart = new AtomicLong();
+    private final AtomicLong firstTestStart = new AtomicLong();
+    private final AtomicLong firstResult = new AtomicLong();
+
+    @Override
+    public void onStart(ISuite suite) {
+        suiteStart.set(System.nanoTime());
+        firstTestStart.set(0);
+        firstResult.set(0);
+    }
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod() && firstTestStart.compareAndSet(0, System.nanoTime()))
+            logger.info("Suite '{}' start to first test ({}): {} ms", testResult.getTestContext().getSuite().getName(),
+                    testResult.getMethod().getMethodName(), sinceSuiteStart(firstTestStart.get()));
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        // a skipped test ran no assertions, so it is not a result yet
+        if (method.isTestMethod() && testResult.getStatus() != ITestResult.SKIP
+                && firstResult.compareAndSet(0, System.nanoTime()))
+            logger.info("Suite '{}' start to first test result ({} {}): {} ms",
+                    testResult.getTestContext().getSuite().getName(), testResult.getMethod().getMethodName(),
+                    testResult.isSuccess() ? "passed" : "failed", sinceSuiteStart(firstResult.get()));
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        if (firstResult.get() != 0)
+            logger.info("Suite '{}' startup: first test after {} ms, first result after {} ms, suite took {} ms",
+                    suite.getName(), sinceSuiteStart(firstTestStart.get()), sinceSuiteStart(firstResult.get()),
+                    sinceSuiteStart(System.nanoTime()));
+    }
+
+    private long sinceSuiteStart(long nanoTime) {
+        return (nanoTime - suiteStart.get()) / 1_000_000;
+    }
+}
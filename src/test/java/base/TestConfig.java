@@ -0,0 +1,98 @@
+package base;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Immutable view of test-config.properties, shared by all test threads.
+ * A JVM system property with the same key overrides the value from the file.
+ */
+public final class TestConfig {
+
+    public static final String CONFIG_FILE = "test-config.properties";
+
+    private static volatile TestConfig instance;
+
+    private final Map<String, String> values;
+
+    private TestConfig(Map<String, String> values) {
+        this.values = Map.copyOf(values);
+    }
+
+    public static TestConfig get() {
+        TestConfig config = instance;
+        if (config == null) {
+            synchronized (TestConfig.class) {
+                if (instance == null)
+                    instance = load(CONFIG_FILE);
+                config = instance;
+            }
+        }
+        return config;
+    }
+
+    static TestConfig load(String configFile) {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(configFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read test config " + configFile, e);
+        }
+        Map<String, String> values = new HashMap<>();
+        properties.stringPropertyNames().forEach(name -> values.put(name, properties.getProperty(name).trim()));
+        return new TestConfig(values);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, values.get(key));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public String getBaseURL() {
+        return getString("test.baseURL", null);
+    }
+
+    public String getBrowser() {
+        return getString("test.browser", "chrome");
+    }
+
+    public int getPageLoadTimeout() {
+        return getInt("test.pageLoadTimeout", 30);
+    }
+
+    public int getPoolSize() {
+        return getInt("test.pool.size", getThreadCount());
+    }
+
+    public int getPoolMaxReuse() {
+        return getInt("test.pool.maxReuse", 10);
+    }
+
+    public String getParallelMode() {
+        return getString("test.parallel", "none");
+    }
+
+    public int getThreadCount() {
+        return getInt("test.threadCount", 1);
+    }
+}
@@ -0,0 +1,292 @@
+package base;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Test data file in the {@code tc=<test>,name=value,...} format, loaded lazily on first
+ * lookup from a memory-mapped copy of the file. Rows are indexed by {@code tc}
+ * (case-insensitive) and known numeric fields are kept in primitive columns.
+ * Malformed rows are reported with their line number and left out of the index.
+ */
+public final class TestDataStore {
+
+    private final static Logger logger = LogManager.getLogger(TestDataStore.class);
+
+    // Fields parsed into double columns; a value that is not a number makes the row malformed
+    public static final Set<String> NUMERIC_FIELDS = Set.of(
+            "age", "cm", "kg", "feet", "inch", "pound", "bodyFat", "tolerance",
+            "CDegree", "fDegree", "sFoot", "sMeter", "gallon", "liter");
+
+    private final Path file;
+    private volatile Data data;
+
+    private TestDataStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns a store for the file without reading it; the file is parsed on first access.
+     */
+    public static TestDataStore open(String file) {
+        return new TestDataStore(Path.of(file));
+    }
+
+    public Row find(String testName) {
+        Data data = data();
+        Integer row = data.index.get(testName.toLowerCase(Locale.ROOT));
+        return row == null ? null : new Row(data, row);
+    }
+
+    public int size() {
+        return data().rowCount;
+    }
+
+    public List<MalformedRow> getMalformedRows() {
+        return data().malformedRows;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private Data data() {
+        Data loaded = data;
+        if (loaded == null) {
+            synchronized (this) {
+                if (data == null)
+                    data = load(file);
+                loaded = data;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Parses one {@code name=value,...} line into {@code target} in a single pass.
+     * Returns null on success, otherwise the reason the line is malformed.
+     */
+    public static String parseLine(String line, Map<String, String> target) {
+        int start = 0;
+        int length = line.length();
+        while (start <= length) {
+            int comma = line.indexOf(',', start);
+            int end = comma < 0 ? length : comma;
+            int eq = line.indexOf('=', start);
+            if (eq < 0 || eq >= end)
+                return "expected name=value at column " + (start + 1);
+            String name = line.substring(start, eq).trim();
+            if (name.isEmpty())
+                return "empty field name at column " + (start + 1);
+            if (target.put(name, line.substring(eq + 1, end).trim()) != null)
+                return "duplicate field '" + name + "'";
+            if (comma < 0)
+                break;
+            start = comma + 1;
+        }
+        return null;
+    }
+
+    private static Data load(Path file) {
+        long startNanos = System.nanoTime();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read test data file " + file, e);
+        }
+
+        int capacity = 1;
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n')
+                capacity++;
+        }
+
+        Data data = new Data(buffer, capacity);
+        Map<String, String> fields = new LinkedHashMap<>();
+        int lineNumber = 0;
+        int lineStart = 0;
+        int limit = buffer.limit();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+            lineNumber++;
+            String line = decode(buffer, lineStart, lineEnd);
+            if (!line.isBlank() && !line.startsWith("#")) {
+                fields.clear();
+                String error = parseLine(line, fields);
+                if (error == null)
+                    error = data.addRow(fields, lineStart, lineEnd - lineStart, lineNumber);
+                if (error != null) {
+                    data.malformedRows.add(new MalformedRow(lineNumber, line, error));
+                    logger.warn("{}:{} malformed test data row ({}): {}", file, lineNumber, error, line);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        data.malformedRows = Collections.unmodifiableList(data.malformedRows);
+        if (data.duplicateRows > 0)
+            logger.warn("{} test data row(s) repeat an earlier tc (first: {}); lookups use the first row per test",
+                    data.duplicateRows, data.firstDuplicate);
+
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.printf(Level.INFO, "Loaded %d test data row(s) from %s in %d ms: %d numeric and %d text column(s), ~%d KB indexed, %d malformed row(s)",
+                data.rowCount, file, millis, data.numeric.size(), data.text.size(),
+                data.estimatedBytes() / 1024, data.malformedRows.size());
+        return data;
+    }
+
+    private static String decode(MappedByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r')
+            end--;
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public record MalformedRow(int lineNumber, String line, String reason) {
+    }
+
+    /**
+     * View of one indexed row. Numeric fields come from the typed columns; the
+     * original text of the row is decoded again from the mapped file when needed.
+     */
+    public static final class Row {
+        private final Data data;
+        private final int row;
+
+        private Row(Data data, int row) {
+            this.data = data;
+            this.row = row;
+        }
+
+        public int getLineNumber() {
+            return data.lineNumbers[row];
+        }
+
+        public String getString(String name) {
+            String[] column = data.text.get(name);
+            if (column != null)
+                return column[row];
+            return asMap().get(name);
+        }
+
+        public double getDouble(String name) {
+            double[] column = data.numeric.get(name);
+            if (column == null)
+                throw new IllegalArgumentException("Not a numeric test data field: " + name);
+            return column[row];
+        }
+
+        public boolean has(String name) {
+            double[] column = data.numeric.get(name);
+            if (column != null)
+                return !Double.isNaN(column[row]);
+            String[] text = data.text.get(name);
+            return text != null && text[row] != null;
+        }
+
+        public Map<String, String> asMap() {
+            Map<String, String> fields = new LinkedHashMap<>();
+            parseLine(decode(data.buffer, data.lineOffsets[row], data.lineOffsets[row] + data.lineLengths[row]), fields);
+            return Collections.unmodifiableMap(fields);
+        }
+
+        @Override
+        public String toString() {
+            return "line " + getLineNumber() + ": " + getString("tc");
+        }
+    }
+
+    private static final class Data {
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final int[] lineOffsets;
+        private final int[] lineLengths;
+        private final int[] lineNumbers;
+        private final Map<String, double[]> numeric = new HashMap<>();
+        private final Map<String, String[]> text = new HashMap<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Double> parsedNumbers = new HashMap<>();
+        private final Map<String, String> distinctValues = new HashMap<>();
+        private List<MalformedRow> malformedRows = new ArrayList<>();
+        private int rowCount;
+        private int duplicateRows;
+        private String firstDuplicate;
+
+        private Data(MappedByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.lineOffsets = new int[capacity];
+            this.lineLengths = new int[capacity];
+            this.lineNumbers = new int[capacity];
+        }
+
+        private String addRow(Map<String, String> fields, int offset, int length, int lineNumber) {
+            String tc = fields.get("tc");
+            if (tc == null || tc.isEmpty())
+                return "missing tc field";
+            parsedNumbers.clear();
+            for (String name : NUMERIC_FIELDS) {
+                String value = fields.get(name);
+                if (value == null)
+                    continue;
+                try {
+                    parsedNumbers.put(name, Double.parseDouble(value));
+                } catch (NumberFormatException e) {
+                    return "field '" + name + "' is not a number: " + value;
+                }
+            }
+
+            int row = rowCount;
+            // bulk files repeat a tc on many rows; counted here and reported once after the load
+            if (index.putIfAbsent(tc.toLowerCase(Locale.ROOT), row) != null && duplicateRows++ == 0)
+                firstDuplicate = tc + " at line " + lineNumber;
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                String name = field.getKey();
+                Double number = parsedNumbers.get(name);
+                if (number != null) {
+                    numeric.computeIfAbsent(name, key -> {
+                        double[] column = new double[capacity];
+                        Arrays.fill(column, Double.NaN);
+                        return column;
+                    })[row] = number;
+                } else {
+                    // tc is kept as read, not interned (it can repeat, see duplicateRows above);
+                    // the other text fields (gender, activity, formula...) repeat a lot and are shared
+                    String value = name.equals("tc") ? field.getValue() : distinctValues.computeIfAbsent(field.getValue(), v -> v);
+                    text.computeIfAbsent(name, key -> new String[capacity])[row] = value;
+                }
+            }
+            lineOffsets[row] = offset;
+            lineLengths[row] = length;
+            lineNumbers[row] = lineNumber;
+            rowCount++;
+            return null;
+        }
+
+        private long estimatedBytes() {
+            long perRow = 3L * Integer.BYTES + (long) numeric.size() * Double.BYTES + (long) text.size() * 4;
+            return perRow * capacity + index.size() * 48L;
+        }
+    }
+}
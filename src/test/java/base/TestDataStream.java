@@ -0,0 +1,108 @@
+package base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Streams rows of a test data file one line at a time, for data providers over files
+ * too large to keep in memory. Only the next matching row is held at any time and
+ * the file is closed once the last row has been handed out (a consumer that drains the
+ * iterator, like a parallel DataProvider, still ends up holding every matching row).
+ */
+public final class TestDataStream implements Iterator<Object[]> {
+
+    private final static Logger logger = LogManager.getLogger(TestDataStream.class);
+
+    private final Path file;
+    private final Predicate<Map<String, String>> filter;
+    private BufferedReader reader;
+    private int lineNumber;
+    private DataRow next;
+
+    private TestDataStream(Path file, Predicate<Map<String, String>> filter) {
+        this.file = file;
+        this.filter = filter;
+    }
+
+    /**
+     * Streams the rows whose tc matches the test name (case-insensitive).
+     */
+    public static TestDataStream forTest(String file, String testName) {
+        return new TestDataStream(Path.of(file), fields -> testName.equalsIgnoreCase(fields.get("tc")));
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if (next == null)
+            next = readNext();
+        return next != null;
+    }
+
+    @Override
+    public synchronized Object[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        DataRow row = next;
+        next = null;
+        return new Object[]{row};
+    }
+
+    private DataRow readNext() {
+        try {
+            if (reader == null) {
+                if (lineNumber < 0)
+                    return null;
+                reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#"))
+                    continue;
+                Map<String, String> fields = new LinkedHashMap<>();
+                String error = TestDataStore.parseLine(line, fields);
+                // a malformed row still goes to its test (the fields before the error name it)
+                // so it fails as its own invocation; one whose tc cannot be read goes nowhere
+                if (filter.test(fields))
+                    return new DataRow(file.getFileName().toString(), lineNumber, fields, error);
+                if (error != null && !fields.containsKey("tc"))
+                    logger.warn("Skipping malformed row without a tc at {}:{}: {}", file, lineNumber, error);
+            }
+            reader.close();
+            reader = null;
+            lineNumber = -1;
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read test data file " + file, e);
+        }
+    }
+
+    /**
+     * One streamed row; its toString() names the row in the TestNG report.
+     */
+    public record DataRow(String source, int lineNumber, Map<String, String> fields, String error) {
+
+        public String get(String name) {
+            if (error != null)
+                throw new IllegalArgumentException(this + " is malformed: " + error);
+            return fields.get(name);
+        }
+
+        @Override
+        public String toString() {
+            return source + ":" + lineNumber + (error != null ? " (malformed)" : " " + fields);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package base;
+
+import Common.TimeoutManager;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * TimeoutManager: coded timeouts until a site has enough samples, learned ones within the
+ * floor and ceiling after, back-off after a timeout and its expiry, drift, and the merge of
+ * parallel runs. Works on managers directly, without installing one for the page objects.
+ */
+public class TimeoutManagerTest {
+
+    private static final String SITE = "Page|awaitVisible|//h1";
+    private static final Duration CODED = Duration.ofMillis(1500);
+    // p99 + 50% within [100 ms, 20 s] after 5 samples, 10 samples and 8 runs kept, drift at 2x, back-off 2x
+    private static final TimeoutManager.Policy POLICY = new TimeoutManager.Policy(99, 0.5,
+            Duration.ofMillis(100), Duration.ofSeconds(20), 5, 10, 8, 2, 2);
+
+    // one per test method, as the methods run in parallel
+    private final Queue<Path> dirs = new ConcurrentLinkedQueue<>();
+
+    private Path newDir() throws IOException {
+        Path dir = Files.createTempDirectory("timeouts");
+        dirs.add(dir);
+        return dir;
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteDirs() throws IOException {
+        for (Path dir : dirs) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void waits(TimeoutManager manager, int count, long millis) {
+        for (int i = 0; i < count; i++)
+            manager.addWait(SITE, millis * 1_000_000, true);
+    }
+
+    // one run: decide the site's timeout, wait, save; returns the timeout the run used
+    private static long run(TimeoutManager manager, int count, long millis, boolean timedOut) {
+        long used = manager.timeoutOf(SITE, CODED).toMillis();
+        waits(manager, count, millis);
+        if (timedOut)
+            manager.addWait(SITE, used * 1_000_000, false);
+        manager.save();
+        return used;
+    }
+
+    @Test
+    public void keepsTheCodedTimeoutBelowMinSamples() throws IOException {
+        TimeoutManager manager = TimeoutManager.open(newDir().resolve("history.json"), POLICY);
+        run(manager, 4, 100, false);
+        Assert.assertEquals(manager.timeoutOf(SITE, CODED), CODED);
+    }
+
+    @Test
+    public void learnsThePercentilePlusMarginWithinFloorAndCeiling() throws IOException {
+        Path history = newDir().resolve("history.json");
+        TimeoutManager manager = TimeoutManager.open(history, POLICY);
+        waits(manager, 9, 1000);
+        waits(manager, 1, 2000);
+        manager.save();
+        Assert.assertEquals(manager.timeoutOf(SITE, CODED).toMillis(), 3000, "p99 2000 ms + 50%");
+
+        // a history file is read back the same way
+        Assert.assertEquals(TimeoutManager.open(history, POLICY).timeoutOf(SITE, CODED).toMillis(), 3000);
+
+        // only the latest window samples count
+        waits(manager, 10, 40);
+        manager.save();
+        Assert.assertEquals(manager.timeoutOf(SITE, CODED).toMillis(), 100, "60 ms learned, held at the floor");
+
+        waits(manager, 10, 30_000);
+        manager.save();
+        Assert.assertEquals(manager.timeoutOf(SITE, CODED).toMillis(), 20_000, "45 s learned, held at the ceiling");
+    }
+
+    @Test
+    public void backsOffAfterATimeoutForThreeRuns() throws IOException {
+        TimeoutManager manager = TimeoutManager.open(newDir().resolve("history.json"), POLICY);
+        Assert.assertEquals(run(manager, 0, 0, true), 1500);
+        Assert.assertEquals(run(manager, 0, 0, true), 3000, "coded 1500 ms, used 1500 ms x 2");
+        // the third run waits fast: its samples push the timed-out ones out of the window
+        Assert.assertEquals(run(manager, 10, 500, false), 6000, "used 3000 ms x 2");
+        Assert.assertEquals(run(manager, 10, 500, false), 6000);
+        Assert.assertEquals(run(manager, 10, 500, false), 6000);
+        Assert.assertTrue(manager.reportJson().contains("\"backedOff\": false"), manager.reportJson());
+        Assert.assertEquals(run(manager, 10, 500, false), 750, "no timeout in the last three runs: p99 500 ms + 50%");
+    }
+
+    @Test
+    public void backOffStaysBelowTheCeiling() throws IOException {
+        TimeoutManager manager = TimeoutManager.open(newDir().resolve("history.json"), POLICY);
+        long used = 0;
+        for (int i = 0; i < 6; i++)
+            used = run(manager, 0, 0, true);
+        Assert.assertEquals(used, 20_000);
+    }
+
+    @Test
+    public void flagsDriftAtTheDriftRatio() throws IOException {
+        TimeoutManager manager = TimeoutManager.open(newDir().resolve("history.json"), POLICY);
+        for (long p95 : new long[]{100, 100, 100, 190, 200}) {
+            run(manager, 5, p95, false);
+            Assert.assertEquals(manager.getDrifting(), List.of(), "after a run at " + p95 + " ms");
+        }
+        // recent median p95 200 ms, twice the earlier 100 ms
+        run(manager, 5, 200, false);
+        Assert.assertEquals(manager.getDrifting(), List.of(SITE));
+    }
+
+    @Test
+    public void addRunKeepsTheLongestUsedTimeout() throws IOException {
+        Path dir = newDir();
+        Path history = dir.resolve("history.json");
+        for (long coded : new long[]{1500, 4000}) {
+            TimeoutManager shard = TimeoutManager.open(history, POLICY);
+            shard.timeoutOf(SITE, Duration.ofMillis(coded));
+            shard.addWait(SITE, coded * 1_000_000, false);
+            shard.saveRun(dir.resolve("run-" + coded + ".json"));
+        }
+        Assert.assertFalse(Files.exists(history), "shards leave the history alone");
+
+        TimeoutManager merged = TimeoutManager.open(history, POLICY);
+        merged.addRun(dir.resolve("run-4000.json"));
+        merged.addRun(dir.resolve("run-1500.json"));
+        merged.addRun(dir.resolve("missing.json"));
+        merged.save();
+        Assert.assertTrue(merged.reportJson().contains("\"samples\": 2"), merged.reportJson());
+        Assert.assertEquals(merged.timeoutOf(SITE, CODED).toMillis(), 8000, "the longest used timeout, 4000 ms, x 2");
+    }
+}
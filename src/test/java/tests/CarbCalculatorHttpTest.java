@@ -0,0 +1,207 @@
+package tests;
+
+import Oracle.ActivityLevel;
+import Oracle.BmrFormula;
+import Oracle.CarbCalculatorEngine;
+import Oracle.CarbResult;
+import Pages.CarbFormInput;
+import Pages.ResultTable;
+import base.BaseTest;
+import base.HttpCalculatorClient;
+import base.LocalCalculatorServer;
+import base.ResultCache;
+import base.ResultOracle;
+import base.TestDataStream.DataRow;
+import org.apache.logging.log4j.Level;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Browserless counterpart of CarbCalculatorTest: submits the same data rows (matched by
+ * test method name) over HTTP to the local stand-in server and checks the parsed result
+ * table against the reference engine. UI behaviour stays covered by the browser suite.
+ */
+public class CarbCalculatorHttpTest extends BaseTest {
+
+    private HttpCalculatorClient client;
+    private String baseURL;
+
+    @BeforeClass
+    public void setUp() {
+        loadTestProperties();
+        baseURL = LocalCalculatorServer.start(getConfig().getInt("test.localServer.port", 0)).getBaseURL();
+        client = new HttpCalculatorClient(baseURL, Duration.ofSeconds(getConfig().getInt("test.http.timeout", 10)));
+        logger.info("HTTP verification against {}", baseURL);
+    }
+
+    @Override
+    protected boolean usesBrowser() {
+        return false;
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() {
+        if (client != null)
+            client.close();
+    }
+
+    @Test(
+            dataProvider = "bulkData",
+            description = "TC023 (HTTP) Verify the calculator results with valid input using Metric Units."
+    )
+    public void verifyCarbCalculatorWithValidInputMetricUnit(DataRow row) {
+        verifyResultsMatchOracle(toFormInput(row::get, false));
+    }
+
+    @Test(
+            dataProvider = "bulkData",
+            description = "TC024 (HTTP) Verify the calculator results with valid input using US Units."
+    )
+    public void verifyCarbCalculatorWithValidInputUSUnit(DataRow row) {
+        verifyResultsMatchOracle(toFormInput(row::get, true));
+    }
+
+    @Test(
+            dataProvider = "bulkData",
+            description = "TC025 (HTTP) Verify the calculator results with different BMR formula and body fat percentage."
+    )
+    public void verifyCarbCalculatorWithDiffFormulaAndBodyFat(DataRow row) {
+        verifyResultsMatchOracle(toFormInput(row::get, false));
+    }
+
+    @Test(
+            dataProvider = "bulkData",
+            description = "TC026 (HTTP) Verify the age boundary warning is returned instead of a result."
+    )
+    public void verifyCarbCalculatorWithInvalidInput(DataRow row) {
+        HttpCalculatorClient.Response response = client.submit(toFormInput(row::get, false));
+        Assert.assertEquals(response.status(), 200, "Unexpected HTTP status.");
+        Assert.assertTrue(response.ageBoundaryWarning(), "Age boundary warning message should be returned.");
+        Assert.assertTrue(response.resultTable().isEmpty(), "No result table expected for an unsupported age.");
+    }
+
+    @Test(
+            dataProvider = "bulkData",
+            description = "TC027 (HTTP) Verify consistent results when using Metric and US units."
+    )
+    public void verifyCarbCalculatorConsistentResultsAcrossUnits(DataRow row) {
+        CompletableFuture<HttpCalculatorClient.Response> metric = client.submitAsync(toFormInput(row::get, false));
+        CompletableFuture<HttpCalculatorClient.Response> us = client.submitAsync(toFormInput(row::get, true));
+        ResultTable metricResult = metric.join().resultTable();
+        ResultTable usResult = us.join().resultTable();
+
+        Assert.assertFalse(metricResult.isEmpty(), "Metric result should not be empty.");
+        Assert.assertEquals(metricResult.getDailyCaloriesStrings(), usResult.getDailyCaloriesStrings(),
+                "Daily calories list mismatch between Metric and US Units.");
+        Assert.assertEquals(metricResult.getCarbsGramsStrings(), usResult.getCarbsGramsStrings(),
+                "Carbs grams list mismatch between Metric and US Units.");
+    }
+
+    @Test(
+            dataProvider = "pairwiseData",
+            description = "TC031 (HTTP) Verify generated pairwise input combinations against the reference engine, or the age boundary warning outside 18-80."
+    )
+    public void verifyCarbCalculatorPairwiseInputs(DataRow row) {
+        CarbFormInput input = toFormInput(row::get, row.get("cm") == null);
+        if (CarbCalculatorEngine.isAgeSupported(Double.parseDouble(input.age()))) {
+            verifyResultsMatchOracle(input);
+            return;
+        }
+        HttpCalculatorClient.Response response = client.submit(input);
+        Assert.assertEquals(response.status(), 200, "Unexpected HTTP status.");
+        Assert.assertTrue(response.ageBoundaryWarning(), "Age boundary warning message should be returned.");
+        Assert.assertTrue(response.resultTable().isEmpty(), "No result table expected for an unsupported age.");
+    }
+
+    @Test(
+            description = "Submit test.http.sweepSize generated input combinations and check each against the reference engine (opt-in: test.http.sweep)."
+    )
+    public void verifyCarbCalculatorInputSweep() {
+        if (!getConfig().getBoolean("test.http.sweep", false))
+            throw new SkipException("Input sweep is off; run with -Dtest.http.sweep=true");
+        int sweepSize = getConfig().getInt("test.http.sweepSize", 500);
+        Semaphore inFlight = new Semaphore(getConfig().getInt("test.http.maxConcurrency", 64));
+        AtomicInteger mismatches = new AtomicInteger();
+        List<String> firstMismatches = new ArrayList<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>(sweepSize);
+        double tolerance = getOracleTolerance();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < sweepSize; i++) {
+            inFlight.acquireUninterruptibly();
+            pending.add(submitAsync(sweepInput(i))
+                    .whenComplete((response, error) -> inFlight.release())
+                    .thenAccept(response -> {
+                        try {
+                            Assert.assertEquals(response.status(), 200, "Unexpected HTTP status.");
+                            ResultOracle.assertMatches(response.resultTable(),
+                                    ResultOracle.expected(response.input(), new CarbResult()), tolerance);
+                            if (getResultCache() != null)
+                                getResultCache().put(baseURL, response.input(), response.resultTable());
+                        } catch (AssertionError e) {
+                            mismatches.incrementAndGet();
+                            synchronized (firstMismatches) {
+                                if (firstMismatches.size() < 10)
+                                    firstMismatches.add(response.input() + ": " + e.getMessage());
+                            }
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        logger.printf(Level.INFO, "HTTP sweep: %d combinations in %d ms (%d per minute), %d mismatches",
+                sweepSize, elapsedMillis, sweepSize * 60_000L / elapsedMillis, mismatches.get());
+        Assert.assertEquals(mismatches.get(), 0, "Results differing from the reference engine: " + firstMismatches);
+    }
+
+    private void verifyResultsMatchOracle(CarbFormInput input) {
+        HttpCalculatorClient.Response response = submitAsync(input).join();
+        Assert.assertEquals(response.status(), 200, "Unexpected HTTP status.");
+        Assert.assertFalse(response.resultTable().isEmpty(), "Result table should be returned.");
+        logger.debug("Result: {}", response.resultTable().getDailyCaloriesStrings());
+        ResultOracle.assertMatches(response.resultTable(), ResultOracle.expected(input, new CarbResult()),
+                getOracleTolerance());
+        if (getResultCache() != null)
+            getResultCache().put(baseURL, input, response.resultTable());
+    }
+
+    /**
+     * Submits the input, or answers from test.resultCache when the same normalized input
+     * already matched the reference engine.
+     */
+    private CompletableFuture<HttpCalculatorClient.Response> submitAsync(CarbFormInput input) {
+        ResultCache cache = getResultCache();
+        ResultTable cached = cache == null ? null : cache.get(baseURL, input);
+        return cached != null
+                ? CompletableFuture.completedFuture(new HttpCalculatorClient.Response(input, 200, cached, false))
+                : client.submitAsync(input);
+    }
+
+    /**
+     * Deterministic spread over ages, genders, heights, weights, activity levels, formulas
+     * and body fat, alternating metric and US units.
+     */
+    private static CarbFormInput sweepInput(int i) {
+        ActivityLevel[] activities = ActivityLevel.values();
+        BmrFormula[] formulas = BmrFormula.values();
+        String age = String.valueOf(18 + i % 63);
+        String gender = i % 2 == 0 ? "male" : "female";
+        String activity = activities[i % activities.length].getOptionText();
+        CarbFormInput input = (i / 2) % 2 == 0
+                ? CarbFormInput.metric(age, gender, String.valueOf(140 + i % 71), String.valueOf(40 + i % 101), activity)
+                : CarbFormInput.us(age, gender, String.valueOf(4 + i % 3), String.valueOf(i % 12),
+                        String.valueOf(90 + i % 211), activity);
+        return input.withFormula(formulas[i % formulas.length].getLabel(), String.valueOf(5 + i % 41));
+    }
+}
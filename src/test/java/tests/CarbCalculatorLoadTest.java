@@ -0,0 +1,183 @@
+package tests;
+
+import Pages.CarbCalculatorPage;
+import Pages.CarbFormInput;
+import Pages.ResultTable;
+import base.BaseTest;
+import base.BrowserProfile;
+import base.DriverFactory;
+import base.DriverPool;
+import base.HttpCalculatorClient;
+import base.LoadGenerator;
+import base.LoadProfile;
+import base.LocalCalculatorServer;
+import base.TestDataStream;
+import base.TestDataStream.DataRow;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load mode: replays the valid-input flows of CarbCalculatorTest (TC023 metric, TC024 US,
+ * TC025 formula and body fat) as concurrent synthetic users against test.load.baseURL,
+ * either browserless over HTTP or through a small pool of headless browsers, and reports
+ * throughput and latency percentiles per flow step. Skipped unless test.load.enabled=true.
+ */
+public class CarbCalculatorLoadTest extends BaseTest {
+
+    private LoadProfile profile;
+    private String targetURL;
+    private String mode;
+    private List<LoadGenerator.Flow> flows;
+
+    @BeforeClass
+    public void setUp() {
+        loadTestProperties();
+        if (!getConfig().getBoolean("test.load.enabled", false))
+            throw new SkipException("Load mode is off; run with -Dtest.load.enabled=true");
+        profile = LoadProfile.from(getConfig());
+        mode = getConfig().getString("test.load.mode", "http").toLowerCase();
+        // without an explicit target the load goes to the in-JVM stand-in, never to the public site
+        targetURL = getConfig().getString("test.load.baseURL", "");
+        if (targetURL.isBlank())
+            targetURL = LocalCalculatorServer.start(getConfig().getInt("test.localServer.port", 0)).getBaseURL();
+        flows = loadFlows();
+        logger.info("Load target {} in mode {}: {}", targetURL, mode, profile);
+    }
+
+    @Override
+    protected boolean usesBrowser() {
+        return false;
+    }
+
+    @Test(description = "Replay the valid-input flows over HTTP as test.load.users concurrent users.")
+    public void verifyCarbCalculatorUnderHttpLoad() {
+        requireMode("http");
+        try (HttpCalculatorClient client = new HttpCalculatorClient(targetURL,
+                Duration.ofSeconds(getConfig().getInt("test.http.timeout", 10)))) {
+            LoadGenerator.Report report = new LoadGenerator(profile).run(flows, () -> (flow, input, steps) -> {
+                HttpCalculatorClient.Response response = steps.time("submit", () -> client.submit(input));
+                Assert.assertEquals(response.status(), 200, "Unexpected HTTP status.");
+                Assert.assertFalse(response.resultTable().isEmpty(), "Result table should be returned.");
+            });
+            verifyReport("http", report);
+        }
+    }
+
+    @Test(description = "Replay the valid-input flows through test.load.browsers headless browser sessions.")
+    public void verifyCarbCalculatorUnderBrowserLoad() {
+        requireMode("browser");
+        BrowserProfile browserProfile = BrowserProfile.from(getConfig(), getConfig().getString("test.load.profile", "lean"));
+        DriverFactory factory = new DriverFactory(getConfig(), browserProfile);
+        int browsers = getConfig().getInt("test.load.browsers", 2);
+        DriverPool pool = new DriverPool(factory::createDriver, factory::quit, browsers, Integer.MAX_VALUE);
+        try {
+            LoadGenerator.Report report = new LoadGenerator(profile.withUsers(browsers))
+                    .run(flows, () -> new BrowserSession(pool, targetURL));
+            verifyReport("browser", report);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One leased browser and its page object, driven the way the functional tests drive it.
+     */
+    private static final class BrowserSession implements LoadGenerator.Session {
+
+        private final DriverPool pool;
+        private final WebDriver driver;
+        private final CarbCalculatorPage page;
+        private final String targetURL;
+
+        BrowserSession(DriverPool pool, String targetURL) {
+            this.pool = pool;
+            this.driver = pool.lease();
+            this.page = new CarbCalculatorPage(driver);
+            this.targetURL = targetURL;
+        }
+
+        @Override
+        public void run(LoadGenerator.Flow flow, CarbFormInput input, LoadGenerator.Steps steps) throws Exception {
+            steps.time("navigate", () -> {
+                page.navigateToCarbCalculatorPage(targetURL);
+                page.waitForPageLoaded();
+            });
+            if (input.heightCm() == null)
+                steps.time("switchToUSUnitsTab", page::switchToUSUnitsTab);
+            steps.time("fillForm", () -> page.fastFill(input));
+            steps.time("submit", () -> {
+                page.submitCalculation();
+                Assert.assertTrue(page.waitUntilResultIsVisible(), "Result should be visible after submitting calculation.");
+            });
+            ResultTable result = steps.time("readResult", page::getResultTable);
+            Assert.assertFalse(result.isEmpty(), "Result table should be returned.");
+        }
+
+        @Override
+        public void close() {
+            pool.release(driver);
+        }
+    }
+
+    private void requireMode(String required) {
+        if (!mode.equals(required) && !mode.equals("both"))
+            throw new SkipException("test.load.mode is " + mode + ", not " + required);
+    }
+
+    private void verifyReport(String runMode, LoadGenerator.Report report) {
+        report.summaryLines().forEach(line -> logger.info("Load ({}) {}", runMode, line));
+        Path dir = Path.of(getConfig().getString("test.load.reportDir", "target/surefire-reports/load"));
+        try {
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve(runMode + ".json"), report.toJson(runMode));
+        } catch (IOException e) {
+            logger.warn("Cannot write the {} load report", runMode, e);
+        }
+
+        double maxFailureRate = getConfig().getDouble("test.load.maxFailureRate", 0.01);
+        Assert.assertTrue(report.iterations() > 0, "No load iterations were run.");
+        Assert.assertTrue(report.getFailureRate() <= maxFailureRate, String.format(
+                "%d of %d iterations failed, above test.load.maxFailureRate=%s",
+                report.failedIterations(), report.iterations(), maxFailureRate));
+    }
+
+    /**
+     * Inputs of the valid-input tests from test.bulkDataFile, rows matched by tc as for bulkData.
+     */
+    private static List<LoadGenerator.Flow> loadFlows() {
+        String file = getConfig().getString("test.bulkDataFile", "src/main/resources/dataset/CarbCalculatorTestData.txt");
+        List<LoadGenerator.Flow> flows = new ArrayList<>();
+        addFlow(flows, file, "TC023-metric", "verifyCarbCalculatorWithValidInputMetricUnit", false);
+        addFlow(flows, file, "TC024-us", "verifyCarbCalculatorWithValidInputUSUnit", true);
+        addFlow(flows, file, "TC025-formula", "verifyCarbCalculatorWithDiffFormulaAndBodyFat", false);
+        if (flows.isEmpty())
+            Assert.fail("No valid-input rows for the load flows in " + file);
+        return flows;
+    }
+
+    private static void addFlow(List<LoadGenerator.Flow> flows, String file, String flowName, String testName,
+                                boolean usUnits) {
+        List<CarbFormInput> inputs = new ArrayList<>();
+        TestDataStream rows = TestDataStream.forTest(file, testName);
+        while (rows.hasNext()) {
+            DataRow row = (DataRow) rows.next()[0];
+            if (row.error() == null)
+                inputs.add(toFormInput(row::get, usUnits));
+        }
+        if (inputs.isEmpty()) {
+            logger.warn("No test data rows for load flow {} ({})", flowName, testName);
+            return;
+        }
+        flows.add(new LoadGenerator.Flow(flowName, inputs));
+    }
+}
@@ -1,20 +1,41 @@
 package tests;
 
+import Common.ElementCache;
+import Oracle.CarbCalculatorEngine;
+import Oracle.CarbResult;
+import Oracle.UnitConverterTab;
+import Pages.CarbCalculatorPage;
+import Pages.CarbFormInput;
+import Pages.ResultTable;
+import Pages.UnitConversion;
 import base.BaseTest;
+import base.LocalCalculatorServer;
+import base.RequestBlocker;
+import base.ResultCache;
+import base.ResultOracle;
+import base.TestDataStream.DataRow;
+import org.apache.logging.log4j.Level;
+import org.openqa.selenium.JavascriptExecutor;
 import org.testng.Assert;
+import org.testng.ITestResult;
+import org.testng.SkipException;
 import org.testng.annotations.*;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class CarbCalculatorTest extends BaseTest {
 
     //Path to the dataset file containing test input data
     private static final String testInputFile = "src/main/resources/dataset/CarbCalculatorTestData.txt";
 
-    //Map to store test data as key-value pairs
-    private HashMap<String, String> dataMap = null;
+    //Map to store test data as key-value pairs, one per test thread
+    private final ThreadLocal<Map<String, String>> testData = new ThreadLocal<>();
 
     @BeforeClass
     public void setUp() {
@@ -26,27 +47,30 @@ public class CarbCalculatorTest extends BaseTest {
     public void init(Method method) {
         initializeUITest();
         String tcName = method.getName();
-        logger.info("read test data for test case " + tcName);
-        dataMap = getTestdata(tcName);
+        logger.info("read test data for test case {}", tcName);
+        Map<String, String> dataMap = getTestdata(tcName);
+        testData.set(dataMap);
         if (dataMap != null) {
-            dataMap.forEach((key, value) -> logger.info(key + ":" + value));
+            dataMap.forEach((key, value) -> logger.info("{}:{}", key, value));
         }
-        logger.info("================ UI test case: " + tcName + " started ================ ");
-        carbCalPage.navigateToCarbCalculatorPage(getBaseURL());
+        logger.info("================ UI test case: {} started ================ ", tcName);
+        getCarbCalPage().navigateToCarbCalculatorPage(getBaseURL());
     }
 
     @Test(
             enabled = true,
+            dataProvider = "bulkData",
             description = "TC023 Verify that the Carbohydrates Calculator works correctly with valid input using Metric Units."
     )
-    public void verifyCarbCalculatorWithValidInputMetricUnit() {
+    public void verifyCarbCalculatorWithValidInputMetricUnit(DataRow row) {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+
+        // Rows repeating an input the page already answered correctly (test.resultCache) skip the submit
+        if (verifyCachedResultMatchesOracle(row::get, false))
+            return;
 
         // Enter valid Metric Units input
-        carbCalPage.enterAge(dataMap.get("age"));
-        carbCalPage.selectGender(dataMap.get("gender"));
-        carbCalPage.enterHeightMeter(dataMap.get("cm"));
-        carbCalPage.enterWeightKg(dataMap.get("kg"));
-        carbCalPage.selectActivityOption(dataMap.get("activity"));
+        enterMetricUnitInput(row::get);
 
         // Submit and verify result is returned and in Metric Units
         carbCalPage.submitCalculation();
@@ -64,6 +88,9 @@ public class CarbCalculatorTest extends BaseTest {
         List<String> dailyCalories = carbCalPage.getDailyCaloriesStringList();
         List<String> carbsGrams = carbCalPage.getCarbsGramsStringList();
         verifyResultsNotEmptyAndLog(dailyCalories,carbsGrams);
+
+        // Verify the numbers against the reference engine
+        verifyResultsMatchOracle(row::get, false);
     }
 
     @Test(
@@ -71,15 +98,12 @@ public class CarbCalculatorTest extends BaseTest {
             description = "TC024 Verify that the Carbohydrates Calculator works correctly with valid input using US Units."
     )
     public void verifyCarbCalculatorWithValidInputUSUnit() {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        Map<String, String> dataMap = testData.get();
 
         // Switch to US Units and enter required inputs
         carbCalPage.switchToUSUnitsTab();
-        carbCalPage.enterAge(dataMap.get("age"));
-        carbCalPage.selectGender(dataMap.get("gender"));
-        carbCalPage.enterHeightFeet(dataMap.get("feet"));
-        carbCalPage.enterHeightInch(dataMap.get("inch"));
-        carbCalPage.enterWeightPound(dataMap.get("pound"));
-        carbCalPage.selectActivityOption(dataMap.get("activity"));
+        enterUSUnitInput(dataMap::get);
 
         // Submit and verify result is returned and in US Units
         carbCalPage.submitCalculation();
@@ -96,6 +120,9 @@ public class CarbCalculatorTest extends BaseTest {
         List<String> dailyCalories = carbCalPage.getDailyCaloriesStringList();
         List<String> carbsGrams = carbCalPage.getCarbsGramsStringList();
         verifyResultsNotEmptyAndLog(dailyCalories,carbsGrams);
+
+        // Verify the numbers against the reference engine
+        verifyResultsMatchOracle(dataMap::get, true);
     }
 
     @Test(
@@ -103,17 +130,11 @@ public class CarbCalculatorTest extends BaseTest {
             description = "TC025 Verify that the Carbohydrates Calculator works with different BMR formula and body fat percentage."
     )
     public void verifyCarbCalculatorWithDiffFormulaAndBodyFat() {
-        // Enter required inputs
-        carbCalPage.enterAge(dataMap.get("age"));
-        carbCalPage.selectGender(dataMap.get("gender"));
-        carbCalPage.enterHeightMeter(dataMap.get("cm"));
-        carbCalPage.enterWeightKg(dataMap.get("kg"));
-        carbCalPage.selectActivityOption(dataMap.get("activity"));
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        Map<String, String> dataMap = testData.get();
 
-        // Use advanced settings: select BMR formula and enter body fat
-        carbCalPage.expandSettings();
-        carbCalPage.selectBMRFormula(dataMap.get("formula"));
-        carbCalPage.enterBodyFat(dataMap.get("bodyFat"));
+        // Enter required inputs, using advanced settings to select BMR formula and enter body fat
+        enterMetricUnitInput(dataMap::get);
 
         // Submit and verify result is returned and in US Units
         carbCalPage.submitCalculation();
@@ -130,6 +151,9 @@ public class CarbCalculatorTest extends BaseTest {
         List<String> dailyCalories = carbCalPage.getDailyCaloriesStringList();
         List<String> carbsGrams = carbCalPage.getCarbsGramsStringList();
         verifyResultsNotEmptyAndLog(dailyCalories,carbsGrams);
+
+        // Verify the numbers against the reference engine
+        verifyResultsMatchOracle(dataMap::get, false);
     }
 
     @Test(
@@ -137,6 +161,8 @@ public class CarbCalculatorTest extends BaseTest {
             description = "TC026 Verify that the Carbohydrates Calculator correctly handles invalid inputs."
     )
     public void verifyCarbCalculatorWithInvalidInput() {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        Map<String, String> dataMap = testData.get();
 
         // Negative age
         carbCalPage.enterAge("-1");
@@ -190,13 +216,11 @@ public class CarbCalculatorTest extends BaseTest {
             description = "TC027 Verify that the Carbohydrates Calculator outputs consistent results when using Metric and US units."
     )
     public void verifyCarbCalculatorConsistentResultsAcrossUnits() {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        Map<String, String> dataMap = testData.get();
 
         // Submit calculation in Metric Units
-        carbCalPage.enterAge(dataMap.get("age"));
-        carbCalPage.selectGender(dataMap.get("gender"));
-        carbCalPage.enterHeightMeter(dataMap.get("cm"));
-        carbCalPage.enterWeightKg(dataMap.get("kg"));
-        carbCalPage.selectActivityOption(dataMap.get("activity"));
+        enterMetricUnitInput(dataMap::get);
         carbCalPage.submitCalculation();
 
         // Verify results are non-empty and log output
@@ -206,12 +230,7 @@ public class CarbCalculatorTest extends BaseTest {
 
         // Submit calculation in US Units
         carbCalPage.switchToUSUnitsTab();
-        carbCalPage.enterAge(dataMap.get("age"));
-        carbCalPage.selectGender(dataMap.get("gender"));
-        carbCalPage.enterHeightFeet(dataMap.get("feet"));
-        carbCalPage.enterHeightInch(dataMap.get("inch"));
-        carbCalPage.enterWeightPound(dataMap.get("pound"));
-        carbCalPage.selectActivityOption(dataMap.get("activity"));
+        enterUSUnitInput(dataMap::get);
         carbCalPage.submitCalculation();
 
         // Verify results are non-empty and log output
@@ -238,6 +257,8 @@ public class CarbCalculatorTest extends BaseTest {
             description = "TC028 Verify unit conversions are accurate in the carbohydrate calculator."
     )
     public void verifyCarbCalculatorUnitConversionAccuracy() {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        Map<String, String> dataMap = testData.get();
 
         carbCalPage.switchToOtherUnitsTab();
         carbCalPage.switchToUnitConverterFrame();
@@ -295,14 +316,246 @@ public class CarbCalculatorTest extends BaseTest {
         );
     }
 
+    @Test(
+            enabled = true,
+            description = "TC029 Verify every unit pair of each converter sub-tab against the conversion-factor table."
+    )
+    public void verifyUnitConverterAllPairsSweep() {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+
+        carbCalPage.switchToOtherUnitsTab();
+        carbCalPage.switchToUnitConverterFrame();
+        Assert.assertTrue(carbCalPage.isUnitConverterHeaderDisplayed(), "Unit Converter is not displayed.");
+
+        Map<UnitConverterTab, Runnable> subTabs = new EnumMap<>(UnitConverterTab.class);
+        subTabs.put(UnitConverterTab.LENGTH, carbCalPage::switchToLengthSubTab);
+        subTabs.put(UnitConverterTab.TEMPERATURE, carbCalPage::switchToTemperatureSubTab);
+        subTabs.put(UnitConverterTab.AREA, carbCalPage::switchToAreaSubTab);
+        subTabs.put(UnitConverterTab.VOLUME, carbCalPage::switchToVolumeSubTab);
+        subTabs.put(UnitConverterTab.WEIGHT, carbCalPage::switchToWeightSubTab);
+
+        String value = getConfig().getString("test.converter.sweepValue", "1.5");
+        double tolerance = getConfig().getDouble("test.converter.tolerance", 0.00001);
+        List<String> failures = new ArrayList<>();
+        int total = 0;
+        long start = System.nanoTime();
+
+        for (Map.Entry<UnitConverterTab, Runnable> subTab : subTabs.entrySet()) {
+            UnitConverterTab tab = subTab.getKey();
+            subTab.getValue().run();
+            long tabStart = System.nanoTime();
+            List<UnitConversion> conversions = carbCalPage.convertAllUnitPairs(value);
+            long tabMillis = (System.nanoTime() - tabStart) / 1_000_000;
+            logger.printf(Level.INFO, "%s: %d pairs in %d ms", tab.getLabel(), conversions.size(), tabMillis);
+
+            Assert.assertFalse(conversions.isEmpty(), tab.getLabel() + " converter returned no unit pairs.");
+            total += conversions.size();
+            for (UnitConversion conversion : conversions) {
+                String failure = checkConversion(tab, conversion, tolerance);
+                if (failure != null)
+                    failures.add(failure);
+            }
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        logger.printf(Level.INFO, "Unit converter sweep: %d conversions in %d ms (%d per second), %d outside tolerance",
+                total, elapsedMillis, total * 1000L / elapsedMillis, failures.size());
+        failures.forEach(logger::warn);
+        Assert.assertTrue(failures.isEmpty(), failures.size() + " conversions outside tolerance " + tolerance + ": " + failures);
+    }
+
+    @Test(
+            enabled = true,
+            description = "TC030 Verify third-party requests are blocked before they reach the network (local server with test.blockRequests)."
+    )
+    public void verifyThirdPartyRequestsBlocked() {
+        RequestBlocker blocker = getRequestBlocker();
+        if (!getConfig().getBoolean("test.localServer", false) || blocker == null)
+            throw new SkipException("Needs test.localServer=true and test.blockRequests=true");
+        LocalCalculatorServer server = LocalCalculatorServer.start(getConfig().getInt("test.localServer.port", 0));
+        String thirdPartyHost = URI.create(server.getThirdPartyBaseURL()).getHost();
+        long servedBefore = server.getThirdPartyRequests();
+
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        carbCalPage.navigateToCarbCalculatorPage(getBaseURL());
+        carbCalPage.waitForPageLoaded();
+        RequestBlocker.Navigation navigation = blocker.getCurrentNavigation();
+        logger.info("Navigation with request blocking: {}", navigation);
+
+        Assert.assertTrue(navigation.getBlockedHosts().getOrDefault(thirdPartyHost, 0) > 0,
+                "Third-party requests to " + thirdPartyHost + " should be blocked: " + navigation);
+        Assert.assertFalse(navigation.getBlockedHosts().containsKey(URI.create(getBaseURL()).getHost()),
+                "First-party requests must not be blocked: " + navigation);
+        Assert.assertEquals(server.getThirdPartyRequests(), servedBefore,
+                "Blocked third-party resources should never reach the server.");
+        Assert.assertNull(((JavascriptExecutor) getDriver()).executeScript("return window.thirdPartyScripts;"),
+                "No third-party script should have run.");
+    }
+
+    @Test(
+            enabled = true,
+            dataProvider = "pairwiseData",
+            description = "TC031 Verify generated pairwise input combinations: results match the reference engine, ages outside 18-80 show the boundary warning."
+    )
+    public void verifyCarbCalculatorPairwiseInputs(DataRow row) {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        boolean usUnits = row.get("cm") == null;
+
+        if (usUnits) {
+            carbCalPage.switchToUSUnitsTab();
+            enterUSUnitInput(row::get);
+        } else {
+            enterMetricUnitInput(row::get);
+        }
+        carbCalPage.submitCalculation();
+
+        // Single-fault rows with an unsupported age expect the warning instead of a result
+        if (!CarbCalculatorEngine.isAgeSupported(Double.parseDouble(row.get("age")))) {
+            Assert.assertTrue(
+                    carbCalPage.isAgeBoundaryWarningMsgDisplayed(),
+                    "Age boundary warning message should be displayed."
+            );
+            return;
+        }
+        Assert.assertTrue(
+                carbCalPage.waitUntilResultIsVisible(),
+                "Result should be visible after submitting calculation."
+        );
+        Assert.assertTrue(
+                usUnits ? carbCalPage.isUSUnitResult() : carbCalPage.isMetricUnitResult(),
+                "Result should be displayed in " + (usUnits ? "US" : "Metric") + " Units."
+        );
+
+        // Verify the numbers against the reference engine
+        verifyResultsMatchOracle(row::get, usUnits);
+    }
+
+    @Test(
+            enabled = true,
+            description = "TC032 Verify cached page elements: a repeated lookup is served from the cache, an element of a replaced DOM is looked up again once (local server)."
+    )
+    public void verifyElementCacheAfterDomReplacement() {
+        if (!getConfig().getBoolean("test.localServer", false))
+            throw new SkipException("Needs test.localServer=true");
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        carbCalPage.waitForPageLoaded();
+        ElementCache cache = carbCalPage.getElementCache();
+
+        boolean displayed = carbCalPage.isAgeErrorMsgDisplayed();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long staleRetries = cache.getStaleRetries();
+        Assert.assertEquals(carbCalPage.isAgeErrorMsgDisplayed(), displayed);
+        Assert.assertEquals(cache.getHits(), hits + 1, "A repeated lookup should be a cache hit: " + cache);
+        Assert.assertEquals(cache.getMisses(), misses, "A repeated lookup should not search the page: " + cache);
+
+        // the page rebuilds its body without a navigation, so the cached element goes stale unnoticed
+        ((JavascriptExecutor) getDriver()).executeScript("document.body.innerHTML = document.body.innerHTML;");
+        Assert.assertEquals(carbCalPage.isAgeErrorMsgDisplayed(), displayed,
+                "The element should be found again after the DOM was replaced.");
+        Assert.assertEquals(cache.getStaleRetries(), staleRetries + 1, "The stale element should be retried once: " + cache);
+        Assert.assertEquals(cache.getHits(), hits + 2, "The stale element should have come from the cache: " + cache);
+        Assert.assertEquals(cache.getMisses(), misses + 1, "The retry should search the page once: " + cache);
+    }
+
+    /**
+     * Null when the page output is within the relative tolerance of the factor table,
+     * otherwise a description of the mismatch.
+     */
+    private static String checkConversion(UnitConverterTab tab, UnitConversion conversion, double tolerance) {
+        String pair = tab.getLabel() + " " + conversion.input() + " " + conversion.fromUnit() + " -> " + conversion.toUnit();
+        if (!tab.hasUnit(conversion.fromUnit()) || !tab.hasUnit(conversion.toUnit()))
+            return pair + ": unit not in the conversion-factor table";
+        double expected = tab.convert(conversion.fromUnit(), conversion.toUnit(), Double.parseDouble(conversion.input()));
+        double actual = conversion.outputValue();
+        if (Double.isNaN(actual) || Math.abs(actual - expected) > tolerance * Math.abs(expected))
+            return pair + ": page shows '" + conversion.output() + "', expected " + expected;
+        return null;
+    }
+
+    /**
+     * Enters the metric form (plus BMR formula and body fat when the data has them),
+     * either field by field or in one call when test.fastFill is on.
+     */
+    private void enterMetricUnitInput(Function<String, String> data) {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        if (isFastFill()) {
+            carbCalPage.fastFill(toFormInput(data, false));
+            return;
+        }
+        carbCalPage.enterAge(data.apply("age"));
+        carbCalPage.selectGender(data.apply("gender"));
+        carbCalPage.enterHeightMeter(data.apply("cm"));
+        carbCalPage.enterWeightKg(data.apply("kg"));
+        carbCalPage.selectActivityOption(data.apply("activity"));
+        String formula = data.apply("formula");
+        if (formula != null) {
+            carbCalPage.expandSettings();
+            carbCalPage.selectBMRFormula(formula);
+            carbCalPage.enterBodyFat(data.apply("bodyFat"));
+        }
+    }
+
+    /**
+     * Enters the US units form, with BMR formula and body fat when the data has them.
+     */
+    private void enterUSUnitInput(Function<String, String> data) {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
+        if (isFastFill()) {
+            carbCalPage.fastFill(toFormInput(data, true));
+            return;
+        }
+        carbCalPage.enterAge(data.apply("age"));
+        carbCalPage.selectGender(data.apply("gender"));
+        carbCalPage.enterHeightFeet(data.apply("feet"));
+        carbCalPage.enterHeightInch(data.apply("inch"));
+        carbCalPage.enterWeightPound(data.apply("pound"));
+        carbCalPage.selectActivityOption(data.apply("activity"));
+        String formula = data.apply("formula");
+        if (formula != null) {
+            carbCalPage.expandSettings();
+            carbCalPage.selectBMRFormula(formula);
+            carbCalPage.enterBodyFat(data.apply("bodyFat"));
+        }
+    }
+
     private void verifyResultsNotEmptyAndLog(List<String> dailyCalories, List<String> carbsGrams) {
-        System.out.println("Daily Calories Allowance: " + dailyCalories);
-        System.out.println("Carbohydrates Grams: " + carbsGrams);
+        logger.info("Daily Calories Allowance: {}", dailyCalories);
+        logger.info("Carbohydrates Grams: {}", carbsGrams);
 
         Assert.assertFalse(dailyCalories.isEmpty(), "Daily calories result should not be empty.");
         Assert.assertFalse(carbsGrams.isEmpty(), "Carbohydrates grams result should not be empty.");
     }
 
+    /**
+     * Recomputes the result with the in-JVM engine from the same inputs and checks every
+     * goal's calories and carb range against the page, within test.oracle.tolerance.
+     */
+    private void verifyResultsMatchOracle(Function<String, String> data, boolean usUnits) {
+        CarbFormInput input = toFormInput(data, usUnits);
+        CarbResult expected = ResultOracle.expected(input, new CarbResult());
+        logger.info("Oracle result: {}", expected);
+        ResultTable resultTable = getCarbCalPage().getResultTable();
+        ResultOracle.assertMatches(resultTable, expected, getOracleTolerance());
+        if (getResultCache() != null)
+            getResultCache().put(getBaseURL(), input, resultTable);
+    }
+
+    /**
+     * Checks the cached page result for the same normalized input against the reference
+     * engine instead of submitting the form; false when test.resultCache is off or has none.
+     */
+    private boolean verifyCachedResultMatchesOracle(Function<String, String> data, boolean usUnits) {
+        ResultCache cache = getResultCache();
+        CarbFormInput input = toFormInput(data, usUnits);
+        ResultTable cached = cache == null ? null : cache.get(getBaseURL(), input);
+        if (cached == null)
+            return false;
+        logger.info("Cached result for {}, form submission skipped", ResultCache.key(getBaseURL(), input));
+        ResultOracle.assertMatches(cached, ResultOracle.expected(input, new CarbResult()), getOracleTolerance());
+        return true;
+    }
+
     private void verifyUnitConversion(
             Runnable switchToSubTab,
             String fromUnit,
@@ -311,6 +564,7 @@ public class CarbCalculatorTest extends BaseTest {
             String expectedValue,
             double tolerance
     ) {
+        CarbCalculatorPage carbCalPage = getCarbCalPage();
         switchToSubTab.run();
         carbCalPage.selectFromList(fromUnit);
         carbCalPage.selectToList(toUnit);
@@ -325,14 +579,15 @@ public class CarbCalculatorTest extends BaseTest {
         );
     }
 
-    @AfterMethod
-    public void after() {
-        logger.info("Quitting WebDriver after each test case to ensure clean state.");
-        cleanUp();
+    @AfterMethod(alwaysRun = true)
+    public void after(ITestResult result) {
+        logger.info("Returning WebDriver to the session pool after each test case.");
+        testData.remove();
+        cleanUp(result);
     }
 
     @AfterClass
     public void tearDown() {
-        logger.info("All tests completed for CarbCalculatorTest. WebDriver quit handled after each test.");
+        logger.info("All tests completed for CarbCalculatorTest. Pooled WebDriver sessions are quit after the suite.");
     }
 }